@@ -83,6 +83,20 @@ public class GitlabConfiguration {
         return new GitProperty(propertyName, propertyValue);
     }
 
+    public GitProperty getCredentialHelperResetProperty() {
+        String propertyName = "credential."+getUrl().toString()+".helper";
+        String propertyValue = "";
+
+        return new GitProperty(propertyName, propertyValue);
+    }
+
+    public GitProperty getCredentialHelperProperty(String helperCommand) {
+        String propertyName = "credential."+getUrl().toString()+".helper";
+        String propertyValue = helperCommand;
+
+        return new GitProperty(propertyName, propertyValue);
+    }
+
     public GitProperty getIgnoreProperty() {
         String propertyName = WTMPGitProperties.getWtmpIgnoreUrlProperty(getUrl());
         String propertyValue = "true";
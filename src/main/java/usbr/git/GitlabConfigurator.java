@@ -16,12 +16,23 @@ import usbr.git.cli.GitCLI;
 import usbr.git.cli.GitCLIUnavailableException;
 import usbr.git.cli.GitConfig;
 import usbr.git.cli.GitProperty;
+import usbr.git.credential.CredentialCacheServer;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
+/**
+ * Configures the global Git config for the Gitlab instances in a {@link WTMPGitConfig}.
+ *
+ * To avoid running the credential helper chain for every git process in a batch run, call {@link #startCredentialCache()}
+ * after {@link #configureGit()} and close the returned server when done. While it is running, every git process started
+ * through {@link GitCLI} asks the in-memory cache for Gitlab credentials first. Git processes started any other way
+ * must be given {@link CredentialCacheServer#getGitEnvironment()} to use it.
+ */
 public class GitlabConfigurator {
 
     private static final FluentLogger LOGGER = FluentLogger.forEnclosingClass();
@@ -61,6 +72,27 @@ public class GitlabConfigurator {
         }
     }
 
+    /**
+     * Start an in-memory credential cache for the configured Gitlab instances, and register it with {@link GitCLI}.
+     * Instances with the WTMP ignore property set are left alone, as in {@link #configureGit()}.
+     * @return The running cache. Closing it unregisters it from {@link GitCLI}.
+     * @throws IOException If the cache could not be started
+     * @throws InterruptedException
+     */
+    public CredentialCacheServer startCredentialCache() throws IOException, InterruptedException {
+        Map<String, String> gitConfig = GitConfig.listGlobalGitConfig();
+        List<GitlabConfiguration> cachedConfigs = new ArrayList<>();
+        for (GitlabConfiguration gitlabConfig : _configuration.getGitlabConfigs()) {
+            if (gitlabConfig.getUrl() != null && !mapContainsProperty(gitConfig, gitlabConfig.getIgnoreProperty())) {
+                cachedConfigs.add(gitlabConfig);
+            }
+        }
+        LOGGER.atConfig().log("Starting credential cache for %s Gitlab instances", cachedConfigs.size());
+        CredentialCacheServer server = CredentialCacheServer.start(cachedConfigs);
+        server.registerWithGitCLI();
+        return server;
+    }
+
     /**
      * This will retrieve the Global git config for the system as a map.
      * If the config comes back as blank (typically the case on a brand new Git install),
@@ -0,0 +1,25 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Consumes the standard output of a Git command while it runs
+ */
+@FunctionalInterface
+public interface CLIStreamHandler {
+
+    /**
+     * @param stdOut Git's standard output. Closed by the caller once this returns.
+     * @throws IOException
+     */
+    void handle(InputStream stdOut) throws IOException;
+}
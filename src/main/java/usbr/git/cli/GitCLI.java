@@ -18,6 +18,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -29,6 +30,8 @@ public final class GitCLI {
 
     private static final FluentLogger LOGGER = FluentLogger.forEnclosingClass();
 
+    private static volatile Map<String, String> _defaultEnvironment = Collections.emptyMap();
+
     private GitCLI() {
         super();
     }
@@ -76,6 +79,19 @@ public final class GitCLI {
         }
     }
 
+    /**
+     * Set environment variables passed to every Git execution, such as the credential helper registration
+     * of {@link usbr.git.credential.CredentialCacheServer}. Variables passed to a single call take precedence.
+     * @param environmentVariables The variables, or an empty map to clear them
+     */
+    public static void setDefaultEnvironment(Map<String, String> environmentVariables) {
+        _defaultEnvironment = Collections.unmodifiableMap(new HashMap<>(environmentVariables));
+    }
+
+    public static Map<String, String> getDefaultEnvironment() {
+        return _defaultEnvironment;
+    }
+
     static void dumpOutputToStdOutError(CLIOutput output) {
         System.out.println(output.getStdOut());
         System.err.println(output.getStdErr());
@@ -106,16 +122,52 @@ public final class GitCLI {
         return execCommand(workingDir, "git", arguments, environmentVariables);
     }
 
-    private static CLIOutput execCommand(Path workingDir, String executableName, List<String> arguments, Map<String, String> environmentVariables) throws InterruptedException, IOException {
+    /**
+     * Execute Git in the working directory with the specified arguments, handing standard output to the handler
+     * as it is produced rather than collecting it into a String. Use this for output that may be large.
+     * @param workingDir The working directory to run Git in
+     * @param arguments The arguments to pass to Git
+     * @param environmentVariables Any environment variables to pass to the execution of Git
+     * @param stdOutHandler Reads Git's standard output; called on the current thread
+     * @return The CLI Output from Git executing. Standard output is empty, since it was passed to the handler
+     * @throws InterruptedException
+     * @throws IOException If Git could not be started, or the handler failed
+     */
+    public static CLIOutput git(Path workingDir, List<String> arguments, Map<String, String> environmentVariables, CLIStreamHandler stdOutHandler) throws InterruptedException, IOException {
+        Process newProcess = startProcess(workingDir, "git", arguments, environmentVariables);
+
+        StreamConsumer stdErrCapture = new StreamConsumer(newProcess.getErrorStream());
+        Thread error = new Thread(stdErrCapture);
+        error.setName("GIT STDERR Monitor");
+        error.start();
+
+        try (InputStream stdOut = newProcess.getInputStream()) {
+            stdOutHandler.handle(stdOut);
+        } catch (IOException | RuntimeException e) {
+            newProcess.destroy();
+            throw e;
+        }
+
+        int exitCode = newProcess.waitFor();
+        error.join();
+        return new CLIOutput(exitCode, "", stdErrCapture.getAccumulatedOutput());
+    }
+
+    private static Process startProcess(Path workingDir, String executableName, List<String> arguments, Map<String, String> environmentVariables) throws IOException {
         List<String> gitArgs = new ArrayList<>();
         gitArgs.add(executableName);
         gitArgs.addAll(arguments);
         LOGGER.atInfo().log("%s", gitArgs);
 
         ProcessBuilder processBuilder = new ProcessBuilder(gitArgs);
+        processBuilder.environment().putAll(_defaultEnvironment);
         processBuilder.environment().putAll(environmentVariables);
         processBuilder.directory(workingDir.toAbsolutePath().toFile());
-        Process newProcess = processBuilder.start();
+        return processBuilder.start();
+    }
+
+    private static CLIOutput execCommand(Path workingDir, String executableName, List<String> arguments, Map<String, String> environmentVariables) throws InterruptedException, IOException {
+        Process newProcess = startProcess(workingDir, executableName, arguments, environmentVariables);
 
         StreamConsumer stdOutCapture = new StreamConsumer(newProcess.getInputStream());
         Thread stdout = new Thread(stdOutCapture);
@@ -127,6 +179,9 @@ public final class GitCLI {
         error.start();
 
         int exitCode = newProcess.waitFor();
+        // The process exiting does not mean its output has been read yet
+        stdout.join();
+        error.join();
         return new CLIOutput(exitCode, stdOutCapture.getAccumulatedOutput(), stdErrCapture.getAccumulatedOutput());
     }
 
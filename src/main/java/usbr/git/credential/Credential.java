@@ -0,0 +1,134 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.credential;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The set of attributes exchanged with a Git credential helper, as described in git-credential(1).
+ * Attributes are kept in the order they were read; array attributes (e.g. wwwauth[]) may repeat.
+ */
+public final class Credential {
+
+    public static final String PROTOCOL = "protocol";
+    public static final String HOST = "host";
+    public static final String PATH = "path";
+    public static final String USERNAME = "username";
+    public static final String PASSWORD = "password";
+    public static final String PASSWORD_EXPIRY_UTC = "password_expiry_utc";
+
+    private final Map<String, List<String>> _attributes = new LinkedHashMap<>();
+
+    public Credential() {
+        super();
+    }
+
+    public String get(String key) {
+        List<String> values = _attributes.get(key);
+        return (values == null || values.isEmpty()) ? null : values.get(values.size() - 1);
+    }
+
+    public List<String> getAll(String key) {
+        List<String> values = _attributes.get(key);
+        return values == null ? Collections.<String>emptyList() : Collections.unmodifiableList(values);
+    }
+
+    public void set(String key, String value) {
+        List<String> values = new ArrayList<>(1);
+        values.add(value);
+        _attributes.put(key, values);
+    }
+
+    public void add(String key, String value) {
+        List<String> values = _attributes.get(key);
+        if (values == null) {
+            values = new ArrayList<>(1);
+            _attributes.put(key, values);
+        }
+        values.add(value);
+    }
+
+    public boolean hasPassword() {
+        return get(USERNAME) != null && get(PASSWORD) != null;
+    }
+
+    /**
+     * @return The key credentials are cached under, e.g. "https://gitlab.example.com/group/project.git"
+     */
+    public String getCacheKey() {
+        StringBuilder key = new StringBuilder();
+        key.append(get(PROTOCOL)).append("://").append(get(HOST));
+        String path = get(PATH);
+        if (path != null && !path.isEmpty()) {
+            key.append('/').append(path);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Read attributes up to a blank line or the end of the stream
+     * @param reader The helper input
+     * @return The parsed credential
+     * @throws IOException
+     */
+    public static Credential read(BufferedReader reader) throws IOException {
+        Credential credential = new Credential();
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            int separator = line.indexOf('=');
+            if (separator <= 0) {
+                continue;
+            }
+            String key = line.substring(0, separator);
+            String value = line.substring(separator + 1);
+            if (key.endsWith("[]")) {
+                if (value.isEmpty()) {
+                    // An empty value resets an array attribute
+                    credential._attributes.remove(key);
+                } else {
+                    credential.add(key, value);
+                }
+            } else {
+                credential.set(key, value);
+            }
+        }
+        return credential;
+    }
+
+    /**
+     * Write all attributes, terminated by a blank line
+     * @param writer The helper output
+     * @throws IOException
+     */
+    public void write(Writer writer) throws IOException {
+        for (Map.Entry<String, List<String>> entry : _attributes.entrySet()) {
+            for (String value : entry.getValue()) {
+                writer.write(entry.getKey());
+                writer.write('=');
+                writer.write(value);
+                writer.write('\n');
+            }
+        }
+        writer.write('\n');
+        writer.flush();
+    }
+
+    @Override
+    public String toString() {
+        // Never log the password
+        return "Credential{" + getCacheKey() + ", username=" + get(USERNAME) + "}";
+    }
+}
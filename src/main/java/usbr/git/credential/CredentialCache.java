@@ -0,0 +1,170 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.credential;
+
+import com.google.common.flogger.FluentLogger;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory credential store with expiry.
+ *
+ * Entries expire after the configured time to live, or earlier when the helper that produced them
+ * reported a password_expiry_utc (e.g. an OAuth access token).
+ *
+ * Each entry records whether the upstream helper has been asked to store it, so that a credential the upstream
+ * helper only produced through get is still passed on the first time Git approves it.
+ */
+public final class CredentialCache {
+
+    private static final FluentLogger LOGGER = FluentLogger.forEnclosingClass();
+
+    private final Map<String, Entry> _entries = new ConcurrentHashMap<>();
+    private final Duration _timeToLive;
+    private final Clock _clock;
+
+    public CredentialCache(Duration timeToLive) {
+        this(timeToLive, Clock.systemUTC());
+    }
+
+    CredentialCache(Duration timeToLive, Clock clock) {
+        _timeToLive = timeToLive;
+        _clock = clock;
+    }
+
+    /**
+     * Look up a cached credential
+     * @param request The credential requested by Git
+     * @return The cached username and password for the request, or null on a miss
+     */
+    public Credential get(Credential request) {
+        String key = request.getCacheKey();
+        Entry entry = _entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.isValid(_clock.instant())) {
+            LOGGER.atFine().log("Cached credential for %s expired", key);
+            _entries.remove(key, entry);
+            return null;
+        }
+        String requestedUser = request.get(Credential.USERNAME);
+        if (requestedUser != null && !requestedUser.equals(entry._username)) {
+            return null;
+        }
+        Credential response = new Credential();
+        response.set(Credential.USERNAME, entry._username);
+        response.set(Credential.PASSWORD, entry._password);
+        if (entry._passwordExpiry != null) {
+            response.set(Credential.PASSWORD_EXPIRY_UTC, Long.toString(entry._passwordExpiry.getEpochSecond()));
+        }
+        return response;
+    }
+
+    /**
+     * Cache a credential that has been stored upstream. Credentials without a username and password are ignored.
+     * @param credential A credential Git approved
+     */
+    public void store(Credential credential) {
+        store(credential, true);
+    }
+
+    /**
+     * Cache a credential. Credentials without a username and password are ignored.
+     * @param credential A credential Git approved or the upstream helper returned
+     * @param storedUpstream False if the upstream helper has not been asked to store the credential yet
+     */
+    void store(Credential credential, boolean storedUpstream) {
+        if (!credential.hasPassword()) {
+            return;
+        }
+        Instant now = _clock.instant();
+        Instant passwordExpiry = parseExpiry(credential.get(Credential.PASSWORD_EXPIRY_UTC));
+        Instant expiry = now.plus(_timeToLive);
+        if (passwordExpiry != null && passwordExpiry.isBefore(expiry)) {
+            expiry = passwordExpiry;
+        }
+        _entries.put(credential.getCacheKey(), new Entry(credential.get(Credential.USERNAME),
+                credential.get(Credential.PASSWORD), passwordExpiry, expiry, storedUpstream));
+    }
+
+    /**
+     * @param credential A credential Git approved
+     * @return True if the same username and password are cached and were already stored upstream
+     */
+    boolean isStoredUpstream(Credential credential) {
+        Entry entry = _entries.get(credential.getCacheKey());
+        return entry != null && entry._storedUpstream && entry.isValid(_clock.instant())
+                && entry._username.equals(credential.get(Credential.USERNAME))
+                && entry._password.equals(credential.get(Credential.PASSWORD));
+    }
+
+    /**
+     * Remove a cached credential. If the request includes a password, only a matching entry is removed.
+     * @param credential The credential Git rejected
+     */
+    public void erase(Credential credential) {
+        String key = credential.getCacheKey();
+        Entry entry = _entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        String username = credential.get(Credential.USERNAME);
+        String password = credential.get(Credential.PASSWORD);
+        if ((username == null || username.equals(entry._username))
+                && (password == null || password.equals(entry._password))) {
+            _entries.remove(key, entry);
+        }
+    }
+
+    public void clear() {
+        _entries.clear();
+    }
+
+    int size() {
+        return _entries.size();
+    }
+
+    private static Instant parseExpiry(String epochSeconds) {
+        if (epochSeconds == null || epochSeconds.isEmpty()) {
+            return null;
+        }
+        try {
+            return Instant.ofEpochSecond(Long.parseLong(epochSeconds));
+        } catch (NumberFormatException e) {
+            LOGGER.atWarning().log("Ignoring invalid %s: %s", Credential.PASSWORD_EXPIRY_UTC, epochSeconds);
+            return null;
+        }
+    }
+
+    private static final class Entry {
+        private final String _username;
+        private final String _password;
+        private final Instant _passwordExpiry;
+        private final Instant _expiry;
+        private final boolean _storedUpstream;
+
+        private Entry(String username, String password, Instant passwordExpiry, Instant expiry, boolean storedUpstream) {
+            _username = Objects.requireNonNull(username);
+            _password = Objects.requireNonNull(password);
+            _passwordExpiry = passwordExpiry;
+            _expiry = expiry;
+            _storedUpstream = storedUpstream;
+        }
+
+        private boolean isValid(Instant now) {
+            return now.isBefore(_expiry);
+        }
+    }
+}
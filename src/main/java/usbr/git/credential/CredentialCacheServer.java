@@ -0,0 +1,369 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.credential;
+
+import com.google.common.flogger.FluentLogger;
+import usbr.git.GitlabConfiguration;
+import usbr.git.cli.GitCLI;
+import usbr.git.cli.GitProperty;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Credential cache front-end for the configured Gitlab instances.
+ *
+ * Git invokes {@link CredentialHelperClient} as the credential helper for each configured URL, which forwards
+ * the request to this server over a loopback socket. Credentials are answered from an in-memory {@link CredentialCache};
+ * the helpers the user had configured for the URL (normally Git Credential Manager) are only run on a cache miss.
+ *
+ * The helper is registered per git process through {@link #getGitEnvironment()}, which requires Git 2.31 or newer.
+ * Nothing is written to the global Git config, since the server only lives as long as the JVM.
+ * {@link #registerWithGitCLI()} adds the environment to every {@link GitCLI} execution until the server is closed.
+ */
+public final class CredentialCacheServer implements Closeable {
+
+    private static final FluentLogger LOGGER = FluentLogger.forEnclosingClass();
+
+    static final String PORT_ENVIRONMENT_VARIABLE = "WTMP_CREDENTIAL_CACHE_PORT";
+    static final String TOKEN_ENVIRONMENT_VARIABLE = "WTMP_CREDENTIAL_CACHE_TOKEN";
+    static final String GET = "get";
+    static final String STORE = "store";
+    static final String ERASE = "erase";
+
+    /**
+     * Same default as git-credential-cache
+     */
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(15);
+
+    private final Map<GitlabConfiguration, CredentialHelperChain> _upstreams;
+    private final CredentialCache _cache;
+    private final String _token;
+    private final ServerSocket _serverSocket;
+    private final ExecutorService _executor;
+    private final Map<String, Object> _keyLocks = new ConcurrentHashMap<>();
+    private volatile Map<String, String> _registeredEnvironment;
+
+    private CredentialCacheServer(Map<GitlabConfiguration, CredentialHelperChain> upstreams, CredentialCache cache) throws IOException {
+        _upstreams = new LinkedHashMap<>(upstreams);
+        _cache = cache;
+        _token = generateToken();
+        _serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        _executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName("Credential Cache Request");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start a server delegating to the credential helpers configured for each Gitlab instance.
+     * The helpers are read before the server is registered, since its registration replaces them.
+     * @param gitlabConfigs The Gitlab instances to cache credentials for
+     * @return The running server
+     * @throws IOException If the Git config could not be read, or the loopback socket could not be opened
+     * @throws InterruptedException
+     */
+    public static CredentialCacheServer start(List<GitlabConfiguration> gitlabConfigs) throws IOException, InterruptedException {
+        Map<GitlabConfiguration, CredentialHelperChain> upstreams = new LinkedHashMap<>();
+        for (GitlabConfiguration gitlabConfig : gitlabConfigs) {
+            upstreams.put(gitlabConfig, CredentialHelperChain.forUrl(gitlabConfig.getUrl()));
+        }
+        return start(upstreams, new CredentialCache(DEFAULT_TIME_TO_LIVE));
+    }
+
+    /**
+     * Start a server
+     * @param gitlabConfigs The Gitlab instances to cache credentials for
+     * @param upstream The helper to delegate to on a cache miss, for every instance
+     * @param timeToLive How long credentials are cached, unless the upstream helper reports an earlier expiry
+     * @return The running server
+     * @throws IOException If the loopback socket could not be opened
+     */
+    public static CredentialCacheServer start(List<GitlabConfiguration> gitlabConfigs, UpstreamCredentialHelper upstream,
+                                              Duration timeToLive) throws IOException {
+        return start(gitlabConfigs, upstream, new CredentialCache(timeToLive));
+    }
+
+    static CredentialCacheServer start(List<GitlabConfiguration> gitlabConfigs, UpstreamCredentialHelper upstream,
+                                       CredentialCache cache) throws IOException {
+        CredentialHelperChain chain = new CredentialHelperChain(Collections.singletonList(upstream));
+        Map<GitlabConfiguration, CredentialHelperChain> upstreams = new LinkedHashMap<>();
+        for (GitlabConfiguration gitlabConfig : gitlabConfigs) {
+            upstreams.put(gitlabConfig, chain);
+        }
+        return start(upstreams, cache);
+    }
+
+    private static CredentialCacheServer start(Map<GitlabConfiguration, CredentialHelperChain> upstreams,
+                                               CredentialCache cache) throws IOException {
+        CredentialCacheServer server = new CredentialCacheServer(upstreams, cache);
+        Thread acceptThread = new Thread(server::acceptConnections);
+        acceptThread.setName("Credential Cache Server");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        LOGGER.atConfig().log("Credential cache listening on port %s", server.getPort());
+        return server;
+    }
+
+    public int getPort() {
+        return _serverSocket.getLocalPort();
+    }
+
+    String getToken() {
+        return _token;
+    }
+
+    CredentialCache getCache() {
+        return _cache;
+    }
+
+    /**
+     * Use this cache for every git process started through {@link GitCLI}, until the server is closed
+     */
+    public void registerWithGitCLI() {
+        Map<String, String> environment = getGitEnvironment();
+        GitCLI.setDefaultEnvironment(environment);
+        _registeredEnvironment = GitCLI.getDefaultEnvironment();
+    }
+
+    /**
+     * Environment variables to pass to {@link usbr.git.cli.GitCLI#git(java.nio.file.Path, List, Map)} so that
+     * Git uses this cache as the credential helper for every configured Gitlab instance.
+     * @return The environment for git processes
+     */
+    public Map<String, String> getGitEnvironment() {
+        return getGitEnvironment(getClientHelperCommand());
+    }
+
+    Map<String, String> getGitEnvironment(String helperCommand) {
+        List<GitProperty> properties = new ArrayList<>();
+        for (GitlabConfiguration gitlabConfig : _upstreams.keySet()) {
+            // The empty value clears helpers inherited from other config files, so only the cache is asked
+            properties.add(gitlabConfig.getCredentialHelperResetProperty());
+            properties.add(gitlabConfig.getCredentialHelperProperty(helperCommand));
+        }
+
+        Map<String, String> environment = new HashMap<>();
+        // Keep any config already passed to this JVM through the environment
+        int offset = 0;
+        String inheritedCount = System.getenv("GIT_CONFIG_COUNT");
+        if (inheritedCount != null) {
+            try {
+                offset = Integer.parseInt(inheritedCount.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.atWarning().log("Ignoring invalid GIT_CONFIG_COUNT: %s", inheritedCount);
+            }
+        }
+        for (int i = 0; i < properties.size(); i++) {
+            environment.put("GIT_CONFIG_KEY_" + (offset + i), properties.get(i).getKey());
+            environment.put("GIT_CONFIG_VALUE_" + (offset + i), properties.get(i).getValue());
+        }
+        environment.put("GIT_CONFIG_COUNT", Integer.toString(offset + properties.size()));
+        environment.put(PORT_ENVIRONMENT_VARIABLE, Integer.toString(getPort()));
+        environment.put(TOKEN_ENVIRONMENT_VARIABLE, _token);
+        return environment;
+    }
+
+    /**
+     * @return A shell command running {@link CredentialHelperClient} with this JVM's java executable.
+     * The classpath is only the jar (or directory) the client was loaded from, since this library is usually loaded
+     * by a plugin classloader rather than from the JVM's launch classpath. The client needs nothing else.
+     */
+    static String getClientHelperCommand() {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString().replace('\\', '/');
+        String classpath = getClientCodeSource().toString().replace('\\', '/');
+        return "!\"" + java + "\" -cp \"" + classpath + "\" " + CredentialHelperClient.class.getName();
+    }
+
+    static Path getClientCodeSource() {
+        CodeSource codeSource = CredentialHelperClient.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            throw new IllegalStateException("Unable to locate the jar containing " + CredentialHelperClient.class.getName());
+        }
+        try {
+            return Paths.get(codeSource.getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Unable to locate the jar containing " + CredentialHelperClient.class.getName(), e);
+        }
+    }
+
+    private void acceptConnections() {
+        while (!_serverSocket.isClosed()) {
+            try {
+                Socket socket = _serverSocket.accept();
+                _executor.execute(() -> handleConnection(socket));
+            } catch (SocketException e) {
+                // Thrown by accept() when the server is closed
+                LOGGER.atFine().log("Credential cache server stopped");
+            } catch (IOException e) {
+                LOGGER.atWarning().withCause(e).log();
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try (Socket client = socket) {
+            // A connection that never sends its request must not hold a pooled thread forever
+            client.setSoTimeout(CredentialHelperClient.CONNECT_TIMEOUT_MILLIS);
+            handleRequest(client);
+        } catch (IOException e) {
+            LOGGER.atWarning().withCause(e).log();
+        } catch (InterruptedException e) {
+            LOGGER.atWarning().withCause(e).log();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handleRequest(Socket client) throws IOException, InterruptedException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             Writer writer = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8)) {
+            String token = reader.readLine();
+            if (token == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), _token.getBytes(StandardCharsets.UTF_8))) {
+                LOGGER.atWarning().log("Rejected credential request with an invalid token");
+                return;
+            }
+            String operation = reader.readLine();
+            Credential request = Credential.read(reader);
+            Credential response = handle(operation, request);
+            response.write(writer);
+        }
+    }
+
+    Credential handle(String operation, Credential request) throws IOException, InterruptedException {
+        CredentialHelperChain upstream = getUpstream(request);
+        if (upstream == null) {
+            LOGGER.atFine().log("Ignoring credential request for unconfigured URL: %s", request);
+            return new Credential();
+        }
+        if (GET.equals(operation)) {
+            return get(upstream, request);
+        } else if (STORE.equals(operation)) {
+            store(upstream, request);
+        } else if (ERASE.equals(operation)) {
+            _cache.erase(request);
+            upstream.execute(ERASE, request);
+        } else {
+            LOGGER.atWarning().log("Unknown credential helper operation: %s", operation);
+        }
+        return new Credential();
+    }
+
+    private Credential get(CredentialHelperChain upstream, Credential request) throws IOException, InterruptedException {
+        Credential cached = _cache.get(request);
+        if (cached != null) {
+            return cached;
+        }
+        // Only one upstream request per URL, so concurrent git processes don't each prompt for a login
+        Object lock = _keyLocks.computeIfAbsent(request.getCacheKey(), key -> new Object());
+        synchronized (lock) {
+            cached = _cache.get(request);
+            if (cached != null) {
+                return cached;
+            }
+            LOGGER.atFine().log("Credential cache miss for %s", request);
+            Credential response = upstream.execute(GET, request);
+            if (!response.hasPassword()) {
+                return new Credential();
+            }
+            Credential toCache = new Credential();
+            toCache.set(Credential.PROTOCOL, request.get(Credential.PROTOCOL));
+            toCache.set(Credential.HOST, request.get(Credential.HOST));
+            if (request.get(Credential.PATH) != null) {
+                toCache.set(Credential.PATH, request.get(Credential.PATH));
+            }
+            toCache.set(Credential.USERNAME, response.get(Credential.USERNAME));
+            toCache.set(Credential.PASSWORD, response.get(Credential.PASSWORD));
+            if (response.get(Credential.PASSWORD_EXPIRY_UTC) != null) {
+                toCache.set(Credential.PASSWORD_EXPIRY_UTC, response.get(Credential.PASSWORD_EXPIRY_UTC));
+            }
+            // Git approves the credential once it works, and that store has to reach the upstream helper
+            _cache.store(toCache, false);
+            return response;
+        }
+    }
+
+    private void store(CredentialHelperChain upstream, Credential request) throws IOException, InterruptedException {
+        Object lock = _keyLocks.computeIfAbsent(request.getCacheKey(), key -> new Object());
+        synchronized (lock) {
+            if (_cache.isStoredUpstream(request)) {
+                // Git approves every credential that worked; only the first approval is passed on
+                return;
+            }
+            upstream.execute(STORE, request);
+            _cache.store(request);
+        }
+    }
+
+    /**
+     * @return The helpers of the Gitlab instance the request is for, or null if it is not for a configured instance
+     */
+    private CredentialHelperChain getUpstream(Credential request) {
+        String protocol = request.get(Credential.PROTOCOL);
+        String host = request.get(Credential.HOST);
+        if (protocol == null || host == null) {
+            return null;
+        }
+        for (Map.Entry<GitlabConfiguration, CredentialHelperChain> entry : _upstreams.entrySet()) {
+            URL url = entry.getKey().getUrl();
+            if (url != null && protocol.equalsIgnoreCase(url.getProtocol()) && host.equalsIgnoreCase(url.getAuthority())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String generateToken() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder token = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b));
+        }
+        return token.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Only clear the registration if another server has not replaced it since
+        if (_registeredEnvironment != null && GitCLI.getDefaultEnvironment() == _registeredEnvironment) {
+            GitCLI.setDefaultEnvironment(Collections.<String, String>emptyMap());
+        }
+        _serverSocket.close();
+        _executor.shutdownNow();
+        _cache.clear();
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.credential;
+
+import com.google.common.flogger.FluentLogger;
+import usbr.git.cli.CLIOutput;
+import usbr.git.cli.GitCLI;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The credential helpers Git would run for a URL, in the order it would run them.
+ * The cache delegates to these on a miss, so the user's own helper setup keeps working for the Gitlab instances.
+ *
+ * As in Git, get stops at the first helper that returns a username and password, while store and erase go to every helper.
+ */
+public final class CredentialHelperChain {
+
+    private static final FluentLogger LOGGER = FluentLogger.forEnclosingClass();
+
+    private final List<UpstreamCredentialHelper> _helpers;
+
+    public CredentialHelperChain(List<UpstreamCredentialHelper> helpers) {
+        _helpers = Collections.unmodifiableList(new ArrayList<>(helpers));
+    }
+
+    /**
+     * Read the credential helpers configured for a URL, ignoring any registered by a {@link CredentialCacheServer}
+     * @param url The Gitlab instance's URL
+     * @return The configured helpers, which may be none
+     * @throws IOException If the Git config could not be read
+     * @throws InterruptedException
+     */
+    public static CredentialHelperChain forUrl(URL url) throws IOException, InterruptedException {
+        // Only config this JVM inherited; the environment from registerWithGitCLI() would otherwise hide the user's helpers
+        String inheritedCount = System.getenv("GIT_CONFIG_COUNT");
+        Map<String, String> environment = new HashMap<>();
+        environment.put("GIT_CONFIG_COUNT", inheritedCount == null ? "0" : inheritedCount);
+        CLIOutput output = GitCLI.git(Paths.get(""), Arrays.asList("config", "-z", "--get-regexp", "^credential\\..*helper$"), environment);
+        // Exit code 1 means no helper is configured at all
+        if (output.getExitCode() != 0 && output.getExitCode() != 1) {
+            throw new IOException("git config exited with status: " + output.getExitCode() + ", stderr: " + output.getStdErr());
+        }
+        List<UpstreamCredentialHelper> helpers = new ArrayList<>();
+        for (String helperConfig : parseHelperConfig(output.getStdOut(), url)) {
+            helpers.add(UpstreamCredentialHelper.fromHelperConfig(helperConfig));
+        }
+        LOGGER.atConfig().log("Credential helpers for %s: %s", url, helpers);
+        return new CredentialHelperChain(helpers);
+    }
+
+    /**
+     * Work out the effective helper list from `git config -z --get-regexp` output, which is in the order Git reads it.
+     * An empty value clears the helpers listed before it.
+     */
+    static List<String> parseHelperConfig(String configOutput, URL url) {
+        List<String> helpers = new ArrayList<>();
+        for (String record : configOutput.split("\0")) {
+            int separator = record.indexOf('\n');
+            String key = separator < 0 ? record : record.substring(0, separator);
+            String value = separator < 0 ? "" : record.substring(separator + 1);
+            if (key.isEmpty() || !appliesTo(key, url)) {
+                continue;
+            }
+            if (value.isEmpty()) {
+                helpers.clear();
+            } else if (value.contains(CredentialHelperClient.class.getName())) {
+                LOGGER.atFine().log("Skipping credential cache helper inherited from a parent process");
+            } else {
+                helpers.add(value);
+            }
+        }
+        return helpers;
+    }
+
+    private static boolean appliesTo(String key, URL url) {
+        String lowerCaseKey = key.toLowerCase();
+        if (!lowerCaseKey.startsWith("credential.") || !lowerCaseKey.endsWith(".helper")) {
+            return false;
+        }
+        if (lowerCaseKey.equals("credential.helper")) {
+            return true;
+        }
+        return matchesUrl(key.substring("credential.".length(), key.length() - ".helper".length()), url);
+    }
+
+    /**
+     * Match a credential.&lt;url&gt; pattern the way gitcredentials(7) describes: same protocol, host (with * matching
+     * a single host name component), port, user if given, and a path prefix.
+     */
+    static boolean matchesUrl(String pattern, URL url) {
+        // Parsed by hand, since java.net.URI rejects the * wildcard in host names
+        int schemeEnd = pattern.indexOf("://");
+        if (schemeEnd <= 0 || !pattern.substring(0, schemeEnd).equalsIgnoreCase(url.getProtocol())) {
+            return false;
+        }
+        String remainder = pattern.substring(schemeEnd + 3);
+        int pathStart = remainder.indexOf('/');
+        String authority = pathStart < 0 ? remainder : remainder.substring(0, pathStart);
+        String patternPath = trimSlashes(pathStart < 0 ? "" : remainder.substring(pathStart));
+        int userEnd = authority.lastIndexOf('@');
+        if (userEnd >= 0 && !authority.substring(0, userEnd).equals(url.getUserInfo())) {
+            return false;
+        }
+        String hostAndPort = authority.substring(userEnd + 1);
+        int portStart = hostAndPort.lastIndexOf(':');
+        String host = portStart < 0 ? hostAndPort : hostAndPort.substring(0, portStart);
+        int patternPort = url.getDefaultPort();
+        if (portStart >= 0) {
+            try {
+                patternPort = Integer.parseInt(hostAndPort.substring(portStart + 1));
+            } catch (NumberFormatException e) {
+                LOGGER.atFine().log("Ignoring credential config for unparseable URL: %s", pattern);
+                return false;
+            }
+        }
+        int urlPort = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        if (!matchesHost(host, url.getHost()) || patternPort != urlPort) {
+            return false;
+        }
+        String urlPath = trimSlashes(url.getPath());
+        return patternPath.isEmpty() || urlPath.equals(patternPath) || urlPath.startsWith(patternPath + "/");
+    }
+
+    private static boolean matchesHost(String pattern, String host) {
+        String[] patternParts = pattern.toLowerCase().split("\\.");
+        String[] hostParts = host.toLowerCase().split("\\.");
+        if (patternParts.length != hostParts.length) {
+            return false;
+        }
+        for (int i = 0; i < patternParts.length; i++) {
+            if (!patternParts[i].equals("*") && !patternParts[i].equals(hostParts[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String trimSlashes(String path) {
+        String trimmed = path == null ? "" : path;
+        while (trimmed.startsWith("/")) {
+            trimmed = trimmed.substring(1);
+        }
+        while (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    public List<UpstreamCredentialHelper> getHelpers() {
+        return _helpers;
+    }
+
+    /**
+     * Run the helpers with the given operation
+     * @param operation get, store or erase
+     * @param credential The attributes to send to the helpers
+     * @return For get, the first reply with a username and password, or an empty credential. Empty for store and erase
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public Credential execute(String operation, Credential credential) throws IOException, InterruptedException {
+        if (!CredentialCacheServer.GET.equals(operation)) {
+            for (UpstreamCredentialHelper helper : _helpers) {
+                helper.execute(operation, credential);
+            }
+            return new Credential();
+        }
+        for (UpstreamCredentialHelper helper : _helpers) {
+            Credential response = helper.execute(operation, credential);
+            if (response.hasPassword()) {
+                return response;
+            }
+            // A helper may only know the username, which the helpers after it are then asked about
+            if (response.get(Credential.USERNAME) != null && credential.get(Credential.USERNAME) == null) {
+                credential.set(Credential.USERNAME, response.get(Credential.USERNAME));
+            }
+            if (isQuit(response.get("quit"))) {
+                LOGGER.atFine().log("Credential helper %s asked to stop", helper);
+                break;
+            }
+        }
+        return new Credential();
+    }
+
+    private static boolean isQuit(String value) {
+        return value != null && (value.equals("1") || value.equalsIgnoreCase("true"));
+    }
+
+    @Override
+    public String toString() {
+        return _helpers.toString();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.credential;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The credential helper executable Git runs for the configured Gitlab instances.
+ * It forwards the request on stdin to the {@link CredentialCacheServer} of the JVM that launched Git,
+ * and prints the server's reply on stdout.
+ *
+ * If the server cannot be reached the helper replies with nothing, so Git carries on without a credential.
+ */
+public final class CredentialHelperClient {
+
+    static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private CredentialHelperClient() {
+        super();
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("usage: " + CredentialHelperClient.class.getName() + " <get|store|erase>");
+            System.exit(1);
+        }
+        int exitCode = run(args[args.length - 1], System.in, System.out,
+                System.getenv(CredentialCacheServer.PORT_ENVIRONMENT_VARIABLE),
+                System.getenv(CredentialCacheServer.TOKEN_ENVIRONMENT_VARIABLE));
+        System.exit(exitCode);
+    }
+
+    static int run(String operation, InputStream in, OutputStream out, String port, String token) {
+        if (port == null || token == null) {
+            System.err.println("Credential cache is not running, skipping");
+            return 0;
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port.trim())), CONNECT_TIMEOUT_MILLIS);
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            writer.write(token);
+            writer.write('\n');
+            writer.write(operation);
+            writer.write('\n');
+            writer.flush();
+            copy(in, socket.getOutputStream());
+            socket.shutdownOutput();
+            copy(socket.getInputStream(), out);
+            out.flush();
+            return 0;
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Unable to reach credential cache: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+}
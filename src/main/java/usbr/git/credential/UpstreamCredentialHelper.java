@@ -0,0 +1,186 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.credential;
+
+import com.google.common.flogger.FluentLogger;
+import usbr.git.cli.CLIOutput;
+import usbr.git.cli.GitCLI;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A credential helper the cache delegates to on a miss, normally Git Credential Manager.
+ * @see CredentialHelperChain
+ */
+public final class UpstreamCredentialHelper {
+
+    private static final FluentLogger LOGGER = FluentLogger.forEnclosingClass();
+
+    private static volatile String _shell;
+
+    private final List<String> _command;
+
+    /**
+     * @param command The helper executable and its arguments. The operation (get, store, erase) is appended.
+     */
+    public UpstreamCredentialHelper(List<String> command) {
+        _command = Collections.unmodifiableList(new ArrayList<>(command));
+    }
+
+    /**
+     * Create a helper from a credential.helper value, following the rules in gitcredentials(7):
+     * "!cmd" is run by the shell, an absolute path is run directly, and anything else is run as "git credential-name".
+     * @param helperConfig The credential.helper value
+     * @return The upstream helper
+     */
+    public static UpstreamCredentialHelper fromHelperConfig(String helperConfig) {
+        String helper = helperConfig.trim();
+        return fromHelperConfig(helper, helper.startsWith("!") ? getShell() : "sh");
+    }
+
+    static UpstreamCredentialHelper fromHelperConfig(String helperConfig, String shell) {
+        String helper = helperConfig.trim();
+        if (helper.startsWith("!")) {
+            return new UpstreamCredentialHelper(Arrays.asList(shell, "-c", helper.substring(1) + " \"$@\"", helper.substring(1)));
+        }
+        List<String> command = new ArrayList<>(Arrays.asList(helper.split("\\s+")));
+        if (!Paths.get(command.get(0)).isAbsolute()) {
+            command.set(0, "credential-" + command.get(0));
+            command.add(0, "git");
+        }
+        return new UpstreamCredentialHelper(command);
+    }
+
+    public List<String> getCommand() {
+        return _command;
+    }
+
+    /**
+     * The shell Git runs "!" helpers with. Git for Windows does not put its sh.exe on the PATH,
+     * so it is looked up next to Git's exec path (e.g. C:/Program Files/Git/mingw64/libexec/git-core).
+     */
+    static String getShell() {
+        String shell = _shell;
+        if (shell == null) {
+            shell = findShell();
+            _shell = shell;
+        }
+        return shell;
+    }
+
+    private static String findShell() {
+        if (!System.getProperty("os.name", "").toLowerCase().startsWith("windows")) {
+            return "sh";
+        }
+        try {
+            CLIOutput output = GitCLI.git(Paths.get(""), "--exec-path");
+            if (output.getExitCode() == 0) {
+                for (Path directory = Paths.get(output.getStdOut().trim()); directory != null; directory = directory.getParent()) {
+                    for (String candidate : new String[]{"usr/bin/sh.exe", "bin/sh.exe"}) {
+                        Path shell = directory.resolve(candidate);
+                        if (Files.isRegularFile(shell)) {
+                            return shell.toString();
+                        }
+                    }
+                }
+            }
+            LOGGER.atWarning().log("Unable to find the shell next to Git's exec path, using sh from the PATH");
+        } catch (IOException e) {
+            LOGGER.atWarning().withCause(e).log("Unable to find the shell next to Git's exec path, using sh from the PATH");
+        } catch (InterruptedException e) {
+            LOGGER.atWarning().withCause(e).log();
+            Thread.currentThread().interrupt();
+        }
+        return "sh";
+    }
+
+    /**
+     * Run the helper with the given operation
+     * @param operation get, store or erase
+     * @param credential The attributes to send to the helper
+     * @return The attributes the helper replied with (empty for store and erase)
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public Credential execute(String operation, Credential credential) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(_command);
+        command.add(operation);
+        LOGGER.atFine().log("Running upstream credential helper: %s", command);
+
+        Process process = new ProcessBuilder(command).start();
+        StderrConsumer stderr = new StderrConsumer(process.getErrorStream());
+        Thread stderrThread = new Thread(stderr);
+        stderrThread.setName("Credential Helper STDERR Monitor");
+        stderrThread.setDaemon(true);
+        stderrThread.start();
+
+        try (Writer stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8)) {
+            credential.write(stdin);
+        } catch (IOException e) {
+            // The helper is allowed to exit without reading its input
+            LOGGER.atFine().withCause(e).log("Credential helper closed its input early");
+        }
+        Credential response;
+        try (BufferedReader stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            response = Credential.read(stdout);
+        }
+        int exitCode = process.waitFor();
+        stderrThread.join();
+        if (exitCode != 0) {
+            LOGGER.atWarning().log("Credential helper %s exited with status: %s, stderr: %s", command, exitCode, stderr.getOutput());
+            return new Credential();
+        }
+        return response;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" ", _command);
+    }
+
+    private static final class StderrConsumer implements Runnable {
+        private final InputStream _in;
+        private final ByteArrayOutputStream _collectedOutput = new ByteArrayOutputStream();
+
+        private StderrConsumer(InputStream in) {
+            _in = in;
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[1024];
+            try {
+                int read;
+                while ((read = _in.read(buffer)) != -1) {
+                    _collectedOutput.write(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                LOGGER.atWarning().withCause(e).log();
+            }
+        }
+
+        private String getOutput() {
+            return new String(_collectedOutput.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+import java.util.Objects;
+
+/**
+ * The "# branch.*" headers of `git status --porcelain=v2 --branch`
+ */
+public final class BranchStatus {
+
+    private final String _commit;
+    private final String _branch;
+    private final String _upstream;
+    private final int _ahead;
+    private final int _behind;
+
+    BranchStatus(String commit, String branch, String upstream, int ahead, int behind) {
+        _commit = commit;
+        _branch = branch;
+        _upstream = upstream;
+        _ahead = ahead;
+        _behind = behind;
+    }
+
+    /**
+     * @return The commit id of HEAD, or null if the branch has no commits yet
+     */
+    public String getCommit() {
+        return _commit;
+    }
+
+    /**
+     * @return The current branch, or null if HEAD is detached
+     */
+    public String getBranch() {
+        return _branch;
+    }
+
+    /**
+     * @return The upstream branch, or null if none is set
+     */
+    public String getUpstream() {
+        return _upstream;
+    }
+
+    public int getAhead() {
+        return _ahead;
+    }
+
+    public int getBehind() {
+        return _behind;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BranchStatus other = (BranchStatus) o;
+        return _ahead == other._ahead
+                && _behind == other._behind
+                && Objects.equals(_commit, other._commit)
+                && Objects.equals(_branch, other._branch)
+                && Objects.equals(_upstream, other._upstream);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(_commit, _branch, _upstream, _ahead, _behind);
+    }
+
+    @Override
+    public String toString() {
+        return "BranchStatus{" + _branch + " " + _commit + ", upstream=" + _upstream + " +" + _ahead + " -" + _behind + "}";
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache of commit metadata, keyed by commit id.
+ * Commits are immutable, so entries never need invalidating, and one cache can be shared by several {@link CommitHistory} instances.
+ */
+public final class CommitCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private final int _maxEntries;
+    private final Map<String, CommitInfo> _commits;
+
+    public CommitCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public CommitCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxEntries);
+        }
+        _maxEntries = maxEntries;
+        _commits = new LinkedHashMap<String, CommitInfo>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CommitInfo> eldest) {
+                return size() > _maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param commitId The full commit id
+     * @return The cached commit, or null if it is not cached
+     */
+    public synchronized CommitInfo get(String commitId) {
+        return _commits.get(commitId);
+    }
+
+    public synchronized void put(CommitInfo commit) {
+        _commits.put(commit.getId(), commit);
+    }
+
+    public synchronized int size() {
+        return _commits.size();
+    }
+
+    public int getMaxEntries() {
+        return _maxEntries;
+    }
+
+    public synchronized void clear() {
+        _commits.clear();
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+import com.google.common.flogger.FluentLogger;
+import usbr.git.cli.CLIOutput;
+import usbr.git.cli.GitCLI;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pages through the commit history of a repository, optionally limited to a path.
+ *
+ * Pages are read from a `git log -z` stream with a fixed format. Parsed commits go into a shared {@link CommitCache},
+ * and the order of commits seen for each query is remembered, so revisiting a page is answered without running git again.
+ * The remembered commit ids are limited to the cache's size in total, keeping the window around the most recently read
+ * pages; pages outside it are read from git again.
+ */
+public final class CommitHistory {
+
+    private static final FluentLogger LOGGER = FluentLogger.forEnclosingClass();
+
+    // id, parents, author name, email, time, committer name, email, time, subject. With -z, git terminates the subject with a NUL too.
+    static final String FORMAT = "%H%x00%P%x00%an%x00%ae%x00%at%x00%cn%x00%ce%x00%ct%x00%s";
+    private static final int FIELD_COUNT = 9;
+    private static final int MAX_QUERIES = 32;
+
+    private final Path _repository;
+    private final RefResolver _refResolver;
+    private final CommitCache _cache;
+    private final Map<HistoryCursor.QueryKey, QueryIndex> _queries = new LinkedHashMap<HistoryCursor.QueryKey, QueryIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<HistoryCursor.QueryKey, QueryIndex> eldest) {
+            return size() > MAX_QUERIES;
+        }
+    };
+
+    public CommitHistory(Path repository) throws IOException {
+        this(repository, new CommitCache());
+    }
+
+    /**
+     * @param repository The repository's working tree
+     * @param cache The commit cache, which may be shared with other histories
+     * @throws IOException If the directory is not in a repository
+     */
+    public CommitHistory(Path repository, CommitCache cache) throws IOException {
+        this(repository, RefResolver.forDirectory(repository), cache);
+    }
+
+    CommitHistory(Path repository, RefResolver refResolver, CommitCache cache) {
+        _repository = repository;
+        _refResolver = refResolver;
+        _cache = cache;
+    }
+
+    public CommitCache getCache() {
+        return _cache;
+    }
+
+    /**
+     * Start a history query
+     * @param revision The revision to list history from, e.g. HEAD or a branch name
+     * @param path The path to limit history to, relative to the repository root, or null for the whole repository
+     * @param pageSize The number of commits per page
+     * @return The cursor of the first page
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public HistoryCursor start(String revision, String path, int pageSize) throws IOException, InterruptedException {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        String startCommit = _refResolver.resolve(revision);
+        if (startCommit == null) {
+            LOGGER.atFine().log("%s does not resolve to a commit in %s", revision, _repository);
+        }
+        return new HistoryCursor(startCommit, path, 0, pageSize);
+    }
+
+    /**
+     * Start a history query and read its first page
+     * @see #start(String, String, int)
+     */
+    public CommitPage getFirstPage(String revision, String path, int pageSize) throws IOException, InterruptedException {
+        return getPage(start(revision, path, pageSize));
+    }
+
+    /**
+     * Read the page at a cursor. Git is only run if the page has not been read before, or its commits were evicted from the cache.
+     * @param cursor A cursor from {@link #start} or a previous page
+     * @return The page
+     * @throws IOException If git log failed
+     * @throws InterruptedException
+     */
+    public CommitPage getPage(HistoryCursor cursor) throws IOException, InterruptedException {
+        if (cursor.getStartCommit() == null) {
+            return new CommitPage(cursor, Collections.<CommitInfo>emptyList(), false);
+        }
+        QueryIndex index = getQueryIndex(cursor.getQueryKey());
+        CommitPage cached = index.getPage(cursor, _cache);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<CommitInfo> commits = log(cursor);
+        boolean hasMore = commits.size() > cursor.getPageSize();
+        index.record(cursor.getOffset(), commits, !hasMore, _cache.getMaxEntries());
+        trimQueryIndexes(index);
+        return new CommitPage(cursor, hasMore ? commits.subList(0, cursor.getPageSize()) : commits, hasMore);
+    }
+
+    private List<CommitInfo> log(HistoryCursor cursor) throws IOException, InterruptedException {
+        List<String> arguments = new ArrayList<>(Arrays.asList("log", "-z", "--format=" + FORMAT,
+                "--skip=" + cursor.getOffset(),
+                // One extra commit tells us whether there is a next page
+                "--max-count=" + (cursor.getPageSize() + 1),
+                cursor.getStartCommit(), "--"));
+        if (cursor.getPath() != null) {
+            arguments.add(cursor.getPath());
+        }
+        List<CommitInfo> commits = new ArrayList<>(cursor.getPageSize() + 1);
+        // Run from the work tree, since the path is relative to the repository root rather than the directory we were given
+        CLIOutput output = GitCLI.git(_refResolver.getWorkTree(), arguments, Collections.<String, String>emptyMap(),
+                stdOut -> parse(stdOut, _cache, commits));
+        if (output.getExitCode() != 0) {
+            throw new IOException("git log exited with status: " + output.getExitCode() + ", stderr: " + output.getStdErr());
+        }
+        return commits;
+    }
+
+    /**
+     * Drop the least recently used query indexes until the ids they hold fit in the cache's size
+     */
+    private void trimQueryIndexes(QueryIndex current) {
+        synchronized (_queries) {
+            int indexedCount = 0;
+            for (QueryIndex index : _queries.values()) {
+                indexedCount += index.size();
+            }
+            Iterator<QueryIndex> eldestFirst = _queries.values().iterator();
+            while (indexedCount > _cache.getMaxEntries() && eldestFirst.hasNext()) {
+                QueryIndex index = eldestFirst.next();
+                if (index != current) {
+                    indexedCount -= index.size();
+                    eldestFirst.remove();
+                }
+            }
+        }
+    }
+
+    int getIndexedCommitCount() {
+        synchronized (_queries) {
+            int indexedCount = 0;
+            for (QueryIndex index : _queries.values()) {
+                indexedCount += index.size();
+            }
+            return indexedCount;
+        }
+    }
+
+    private QueryIndex getQueryIndex(HistoryCursor.QueryKey key) {
+        synchronized (_queries) {
+            QueryIndex index = _queries.get(key);
+            if (index == null) {
+                index = new QueryIndex();
+                _queries.put(key, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Parse `git log -z --format=FORMAT` output, adding each commit to the list and the cache.
+     * Commits already in the cache are reused instead of being parsed again.
+     */
+    static void parse(InputStream stdOut, CommitCache cache, List<CommitInfo> commits) throws IOException {
+        InputStream in = stdOut instanceof BufferedInputStream ? stdOut : new BufferedInputStream(stdOut);
+        FieldReader reader = new FieldReader(in);
+        String[] fields = new String[FIELD_COUNT];
+        while (true) {
+            String id = reader.next();
+            if (id == null) {
+                return;
+            }
+            CommitInfo cached = cache.get(id);
+            fields[0] = id;
+            for (int i = 1; i < FIELD_COUNT; i++) {
+                if (cached != null) {
+                    reader.skip();
+                } else {
+                    fields[i] = reader.next();
+                    if (fields[i] == null) {
+                        throw new IOException("git log output ended in the middle of commit " + id);
+                    }
+                }
+            }
+            if (cached == null) {
+                cached = toCommit(fields);
+                cache.put(cached);
+            }
+            commits.add(cached);
+        }
+    }
+
+    private static CommitInfo toCommit(String[] fields) throws IOException {
+        List<String> parents = fields[1].isEmpty() ? Collections.<String>emptyList() : Arrays.asList(fields[1].split(" "));
+        try {
+            return new CommitInfo(fields[0], parents, fields[2], fields[3], Instant.ofEpochSecond(Long.parseLong(fields[4])),
+                    fields[5], fields[6], Instant.ofEpochSecond(Long.parseLong(fields[7])), fields[8]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid timestamp in commit " + fields[0], e);
+        }
+    }
+
+    /**
+     * Reads NUL terminated fields through a reusable buffer
+     */
+    private static final class FieldReader {
+        private final InputStream _in;
+        private byte[] _buffer = new byte[256];
+
+        private FieldReader(InputStream in) {
+            _in = in;
+        }
+
+        /**
+         * @return The next field, or null at the end of the stream
+         */
+        private String next() throws IOException {
+            int length = 0;
+            int read;
+            while ((read = _in.read()) != -1) {
+                if (read == 0) {
+                    return new String(_buffer, 0, length, StandardCharsets.UTF_8);
+                }
+                if (length == _buffer.length) {
+                    _buffer = Arrays.copyOf(_buffer, _buffer.length * 2);
+                }
+                _buffer[length++] = (byte) read;
+            }
+            return length > 0 ? new String(_buffer, 0, length, StandardCharsets.UTF_8) : null;
+        }
+
+        private void skip() throws IOException {
+            int read;
+            while ((read = _in.read()) != -1 && read != 0) {
+                // discard
+            }
+        }
+    }
+
+    /**
+     * A window of the commit ids seen for one query, in history order, starting at offset {@code _start}
+     */
+    private static final class QueryIndex {
+        private List<String> _commitIds = new ArrayList<>();
+        private int _start;
+        // True if the history ends right after the window
+        private boolean _complete;
+
+        private synchronized int size() {
+            return _commitIds.size();
+        }
+
+        private synchronized CommitPage getPage(HistoryCursor cursor, CommitCache cache) {
+            int offset = cursor.getOffset();
+            int end = offset + cursor.getPageSize();
+            int windowEnd = _start + _commitIds.size();
+            // Without the commit after the page, only a complete index can say whether there is a next page
+            boolean known = offset >= _start && (windowEnd > end || (_complete && windowEnd >= offset));
+            if (!known) {
+                return null;
+            }
+            List<CommitInfo> commits = new ArrayList<>(cursor.getPageSize());
+            for (String commitId : _commitIds.subList(offset - _start, Math.min(end, windowEnd) - _start)) {
+                CommitInfo commit = cache.get(commitId);
+                if (commit == null) {
+                    return null;
+                }
+                commits.add(commit);
+            }
+            return new CommitPage(cursor, commits, windowEnd > end);
+        }
+
+        private synchronized void record(int offset, List<CommitInfo> commits, boolean reachedEnd, int maxSize) {
+            int windowEnd = _start + _commitIds.size();
+            if (offset > windowEnd || offset + commits.size() < _start) {
+                // Not contiguous with the window, e.g. a cursor jumped ahead, so start a new one there
+                _commitIds = new ArrayList<>();
+                _start = offset;
+                _complete = false;
+            } else if (offset < _start) {
+                List<String> extended = new ArrayList<>(Collections.nCopies(_start - offset, (String) null));
+                extended.addAll(_commitIds);
+                _commitIds = extended;
+                _start = offset;
+            }
+            for (int i = 0; i < commits.size(); i++) {
+                int position = offset - _start + i;
+                String commitId = commits.get(i).getId();
+                if (position < _commitIds.size()) {
+                    _commitIds.set(position, commitId);
+                } else {
+                    _commitIds.add(commitId);
+                }
+            }
+            if (reachedEnd) {
+                _commitIds.subList(offset - _start + commits.size(), _commitIds.size()).clear();
+                _complete = true;
+            }
+            trim(offset, offset + commits.size(), maxSize);
+        }
+
+        /**
+         * Shrink the window to the maximum size, dropping ids from whichever side is farther from the recorded commits
+         */
+        private void trim(int recordedStart, int recordedEnd, int maxSize) {
+            int excess = _commitIds.size() - maxSize;
+            if (excess <= 0) {
+                return;
+            }
+            int before = recordedStart - _start;
+            int after = _start + _commitIds.size() - recordedEnd;
+            if (before >= after) {
+                _commitIds = new ArrayList<>(_commitIds.subList(excess, _commitIds.size()));
+                _start += excess;
+            } else {
+                _commitIds = new ArrayList<>(_commitIds.subList(0, maxSize));
+                _complete = false;
+            }
+        }
+    }
+}
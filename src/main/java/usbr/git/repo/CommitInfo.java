@@ -0,0 +1,89 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Metadata of a single commit, as listed by {@link CommitHistory}
+ */
+public final class CommitInfo {
+
+    private final String _id;
+    private final List<String> _parentIds;
+    private final String _authorName;
+    private final String _authorEmail;
+    private final Instant _authorTime;
+    private final String _committerName;
+    private final String _committerEmail;
+    private final Instant _commitTime;
+    private final String _subject;
+
+    CommitInfo(String id, List<String> parentIds, String authorName, String authorEmail, Instant authorTime,
+               String committerName, String committerEmail, Instant commitTime, String subject) {
+        _id = id;
+        _parentIds = Collections.unmodifiableList(parentIds);
+        _authorName = authorName;
+        _authorEmail = authorEmail;
+        _authorTime = authorTime;
+        _committerName = committerName;
+        _committerEmail = committerEmail;
+        _commitTime = commitTime;
+        _subject = subject;
+    }
+
+    public String getId() {
+        return _id;
+    }
+
+    /**
+     * @return The parent commit ids. Empty for a root commit, more than one for a merge.
+     */
+    public List<String> getParentIds() {
+        return _parentIds;
+    }
+
+    public String getAuthorName() {
+        return _authorName;
+    }
+
+    public String getAuthorEmail() {
+        return _authorEmail;
+    }
+
+    public Instant getAuthorTime() {
+        return _authorTime;
+    }
+
+    public String getCommitterName() {
+        return _committerName;
+    }
+
+    public String getCommitterEmail() {
+        return _committerEmail;
+    }
+
+    public Instant getCommitTime() {
+        return _commitTime;
+    }
+
+    /**
+     * @return The first line of the commit message
+     */
+    public String getSubject() {
+        return _subject;
+    }
+
+    @Override
+    public String toString() {
+        return _id + " " + _subject;
+    }
+}
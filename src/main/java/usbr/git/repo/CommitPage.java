@@ -0,0 +1,56 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a commit history query
+ */
+public final class CommitPage {
+
+    private final HistoryCursor _cursor;
+    private final List<CommitInfo> _commits;
+    private final boolean _hasMore;
+
+    CommitPage(HistoryCursor cursor, List<CommitInfo> commits, boolean hasMore) {
+        _cursor = cursor;
+        _commits = Collections.unmodifiableList(commits);
+        _hasMore = hasMore;
+    }
+
+    /**
+     * @return The commits on this page, newest first
+     */
+    public List<CommitInfo> getCommits() {
+        return _commits;
+    }
+
+    public HistoryCursor getCursor() {
+        return _cursor;
+    }
+
+    /**
+     * @return The cursor for the following page, or null if this is the last page
+     */
+    public HistoryCursor getNextCursor() {
+        return _hasMore ? _cursor.withOffset(_cursor.getOffset() + _cursor.getPageSize()) : null;
+    }
+
+    /**
+     * @return The cursor for the preceding page, or null if this is the first page
+     */
+    public HistoryCursor getPreviousCursor() {
+        if (_cursor.getOffset() == 0) {
+            return null;
+        }
+        return _cursor.withOffset(Math.max(0, _cursor.getOffset() - _cursor.getPageSize()));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+import java.util.Objects;
+
+/**
+ * Position of a page in a commit history query.
+ *
+ * The cursor holds the commit id the query's revision resolved to when it started, so paging through a history
+ * stays consistent when new commits are made in the meantime.
+ */
+public final class HistoryCursor {
+
+    private final String _startCommit;
+    private final String _path;
+    private final int _offset;
+    private final int _pageSize;
+
+    HistoryCursor(String startCommit, String path, int offset, int pageSize) {
+        _startCommit = startCommit;
+        _path = path;
+        _offset = offset;
+        _pageSize = pageSize;
+    }
+
+    /**
+     * @return The commit the history is listed from, or null if the revision has no commits
+     */
+    public String getStartCommit() {
+        return _startCommit;
+    }
+
+    /**
+     * @return The path the history is limited to, or null for the whole repository
+     */
+    public String getPath() {
+        return _path;
+    }
+
+    /**
+     * @return The number of commits before this page
+     */
+    public int getOffset() {
+        return _offset;
+    }
+
+    public int getPageSize() {
+        return _pageSize;
+    }
+
+    HistoryCursor withOffset(int offset) {
+        return new HistoryCursor(_startCommit, _path, offset, _pageSize);
+    }
+
+    QueryKey getQueryKey() {
+        return new QueryKey(_startCommit, _path);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        HistoryCursor other = (HistoryCursor) o;
+        return _offset == other._offset
+                && _pageSize == other._pageSize
+                && Objects.equals(_startCommit, other._startCommit)
+                && Objects.equals(_path, other._path);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(_startCommit, _path, _offset, _pageSize);
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryCursor{" + _startCommit + (_path == null ? "" : " -- " + _path) + ", offset=" + _offset + ", pageSize=" + _pageSize + "}";
+    }
+
+    /**
+     * Identifies the list of commits a cursor pages through, independent of the page
+     */
+    static final class QueryKey {
+        private final String _startCommit;
+        private final String _path;
+
+        private QueryKey(String startCommit, String path) {
+            _startCommit = startCommit;
+            _path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            QueryKey other = (QueryKey) o;
+            return Objects.equals(_startCommit, other._startCommit) && Objects.equals(_path, other._path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(_startCommit, _path);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+import com.google.common.flogger.FluentLogger;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parses the output of `git status --porcelain=v2 -z --branch` as it is read.
+ *
+ * Records are read into a single reusable buffer. An entry whose fields are byte-for-byte the same as in the
+ * previous snapshot is reused rather than allocated again, so only the path is decoded for unchanged entries.
+ */
+final class PorcelainStatusParser {
+
+    private static final FluentLogger LOGGER = FluentLogger.forEnclosingClass();
+
+    private static final String BRANCH_OID = "# branch.oid ";
+    private static final String BRANCH_HEAD = "# branch.head ";
+    private static final String BRANCH_UPSTREAM = "# branch.upstream ";
+    private static final String BRANCH_AB = "# branch.ab ";
+    private static final int FIELDS_START = 2;
+
+    private byte[] _buffer = new byte[512];
+    private int _length;
+
+    StatusSnapshot parse(InputStream stdOut, StatusSnapshot previous) throws IOException {
+        InputStream in = stdOut instanceof BufferedInputStream ? stdOut : new BufferedInputStream(stdOut);
+        Map<String, StatusEntry> entries = new LinkedHashMap<>(Math.max(16, previous.getEntries().size() * 2));
+        String commit = null;
+        String branch = null;
+        String upstream = null;
+        int ahead = 0;
+        int behind = 0;
+        boolean hasBranch = false;
+
+        while (readRecord(in)) {
+            if (_length == 0) {
+                continue;
+            }
+            if (_buffer[0] == '#') {
+                String header = new String(_buffer, 0, _length, StandardCharsets.UTF_8);
+                hasBranch = true;
+                if (header.startsWith(BRANCH_OID)) {
+                    String value = header.substring(BRANCH_OID.length());
+                    commit = "(initial)".equals(value) ? null : value;
+                } else if (header.startsWith(BRANCH_HEAD)) {
+                    String value = header.substring(BRANCH_HEAD.length());
+                    branch = "(detached)".equals(value) ? null : value;
+                } else if (header.startsWith(BRANCH_UPSTREAM)) {
+                    upstream = header.substring(BRANCH_UPSTREAM.length());
+                } else if (header.startsWith(BRANCH_AB)) {
+                    String[] counts = header.substring(BRANCH_AB.length()).split(" ");
+                    ahead = Integer.parseInt(counts[0].substring(1));
+                    behind = Integer.parseInt(counts[1].substring(1));
+                }
+                continue;
+            }
+
+            StatusEntry.Type type = StatusEntry.Type.forRecordType(_buffer[0]);
+            int pathStart = type == null ? -1 : findPathStart(type.getFieldsBeforePath());
+            if (pathStart < 0) {
+                LOGGER.atWarning().log("Skipping unrecognized status record: %s", new String(_buffer, 0, _length, StandardCharsets.UTF_8));
+                continue;
+            }
+            int fieldsLength = pathStart == FIELDS_START ? 0 : pathStart - 1 - FIELDS_START;
+            String path = new String(_buffer, pathStart, _length - pathStart, StandardCharsets.UTF_8);
+            StatusEntry before = previous.getEntry(path);
+            boolean unchanged = before != null && before.getType() == type && before.hasFields(_buffer, FIELDS_START, fieldsLength);
+            byte[] fields = unchanged ? null : Arrays.copyOfRange(_buffer, FIELDS_START, FIELDS_START + fieldsLength);
+
+            String originalPath = null;
+            if (type == StatusEntry.Type.RENAMED) {
+                // With -z, the original path is the following NUL terminated record
+                if (!readRecord(in)) {
+                    throw new IOException("Status output ended before the original path of " + path);
+                }
+                originalPath = new String(_buffer, 0, _length, StandardCharsets.UTF_8);
+                unchanged = unchanged && originalPath.equals(before.getOriginalPath());
+                if (!unchanged && fields == null) {
+                    fields = before.getFields().getBytes(StandardCharsets.UTF_8);
+                }
+            }
+
+            entries.put(path, unchanged ? before : new StatusEntry(type, path, originalPath, fields));
+        }
+
+        BranchStatus branchStatus = hasBranch ? new BranchStatus(commit, branch, upstream, ahead, behind) : null;
+        return new StatusSnapshot(branchStatus, entries);
+    }
+
+    /**
+     * @return The index in the buffer where the path begins, or -1 if the record has too few fields
+     */
+    private int findPathStart(int fieldsBeforePath) {
+        int spaces = 0;
+        for (int i = 0; i < _length; i++) {
+            if (_buffer[i] == ' ' && ++spaces == fieldsBeforePath + 1) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read up to the next NUL into the buffer
+     * @return False if the end of the stream was reached before any bytes were read
+     */
+    private boolean readRecord(InputStream in) throws IOException {
+        _length = 0;
+        int read;
+        while ((read = in.read()) != -1) {
+            if (read == 0) {
+                return true;
+            }
+            if (_length == _buffer.length) {
+                _buffer = Arrays.copyOf(_buffer, _buffer.length * 2);
+            }
+            _buffer[_length++] = (byte) read;
+        }
+        return _length > 0;
+    }
+}
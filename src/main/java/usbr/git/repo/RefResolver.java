@@ -0,0 +1,380 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+import com.google.common.flogger.FluentLogger;
+import usbr.git.cli.CLIOutput;
+import usbr.git.cli.GitCLI;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves HEAD and refs of a repository by reading the files in the .git directory directly,
+ * rather than spawning `git rev-parse` or `git symbolic-ref`.
+ *
+ * Loose refs, packed-refs and linked worktrees (.git files and commondir) are supported.
+ * Repositories using the reftable backend, or anything else that is not recognized, are resolved through {@link GitCLI}.
+ * This includes revision expressions, `@`, abbreviated or uppercase object ids, and refs whose files cannot be read as text.
+ */
+public final class RefResolver {
+
+    private static final FluentLogger LOGGER = FluentLogger.forEnclosingClass();
+
+    private static final String HEAD = "HEAD";
+    private static final String SYMREF_PREFIX = "ref: ";
+    private static final String GITDIR_PREFIX = "gitdir:";
+    private static final String BRANCH_PREFIX = "refs/heads/";
+    // Same limit Git uses when following symbolic refs
+    private static final int MAX_SYMREF_DEPTH = 5;
+    // Shorthand expansion order, as documented in gitrevisions(7)
+    private static final String[] REF_RULES = {"%s", "refs/%s", "refs/tags/%s", "refs/heads/%s", "refs/remotes/%s", "refs/remotes/%s/HEAD"};
+
+    private final Path _workTree;
+    private final Path _gitDir;
+    private final Path _commonDir;
+    private final boolean _useCLI;
+
+    private volatile PackedRefs _packedRefs;
+
+    private RefResolver(Path workTree, Path gitDir, Path commonDir, boolean useCLI) {
+        _workTree = workTree;
+        _gitDir = gitDir;
+        _commonDir = commonDir;
+        _useCLI = useCLI;
+    }
+
+    /**
+     * Create a resolver for the repository containing the given directory.
+     * The directory is searched upward for a .git directory or .git file, the same way Git does.
+     * @param directory A directory within the repository's working tree
+     * @return A resolver for the repository
+     * @throws IOException If no repository could be found
+     */
+    public static RefResolver forDirectory(Path directory) throws IOException {
+        Path current = directory.toAbsolutePath().normalize();
+        while (current != null) {
+            Path dotGit = current.resolve(".git");
+            if (Files.isDirectory(dotGit)) {
+                return forGitDir(current, dotGit);
+            }
+            if (Files.isRegularFile(dotGit)) {
+                return forGitDir(current, readGitFile(dotGit));
+            }
+            current = current.getParent();
+        }
+        throw new IOException("Not a git repository (or any of the parent directories): " + directory);
+    }
+
+    private static RefResolver forGitDir(Path workTree, Path gitDir) throws IOException {
+        Path commonDir = gitDir;
+        Path commonDirFile = gitDir.resolve("commondir");
+        if (Files.isRegularFile(commonDirFile)) {
+            commonDir = gitDir.resolve(readFirstLine(commonDirFile)).normalize();
+        }
+        boolean useCLI = !Files.isRegularFile(gitDir.resolve(HEAD)) || usesReftable(commonDir);
+        if (useCLI) {
+            LOGGER.atConfig().log("Repository at %s will be resolved using the Git CLI", workTree);
+        }
+        return new RefResolver(workTree, gitDir, commonDir, useCLI);
+    }
+
+    private static Path readGitFile(Path dotGitFile) throws IOException {
+        String line = readFirstLine(dotGitFile);
+        if (!line.startsWith(GITDIR_PREFIX)) {
+            throw new IOException("Invalid gitfile format: " + dotGitFile);
+        }
+        Path gitDir = dotGitFile.getParent().resolve(line.substring(GITDIR_PREFIX.length()).trim());
+        return gitDir.normalize();
+    }
+
+    private static boolean usesReftable(Path commonDir) throws IOException {
+        if (Files.isDirectory(commonDir.resolve("reftable"))) {
+            return true;
+        }
+        Path config = commonDir.resolve("config");
+        if (!Files.isRegularFile(config)) {
+            return false;
+        }
+        for (String line : Files.readAllLines(config, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim().toLowerCase();
+            if (trimmed.startsWith("refstorage") && trimmed.contains("reftable")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Path getWorkTree() {
+        return _workTree;
+    }
+
+    public Path getGitDir() {
+        return _gitDir;
+    }
+
+    public Path getCommonDir() {
+        return _commonDir;
+    }
+
+    boolean usesCLI() {
+        return _useCLI;
+    }
+
+    /**
+     * Get the short name of the branch HEAD points to
+     * @return The branch name (e.g. "main"), or null if HEAD is detached
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public String getCurrentBranch() throws IOException, InterruptedException {
+        if (!_useCLI) {
+            try {
+                String head = readLooseRef(HEAD);
+                if (head != null && head.startsWith(SYMREF_PREFIX)) {
+                    String target = head.substring(SYMREF_PREFIX.length()).trim();
+                    return target.startsWith(BRANCH_PREFIX) ? target.substring(BRANCH_PREFIX.length()) : target;
+                }
+                if (head != null && isObjectId(head)) {
+                    return null;
+                }
+            } catch (UnrecognizedRefException e) {
+                LOGGER.atFine().withCause(e).log("Falling back to the Git CLI to read HEAD");
+            }
+        }
+        return outputOrNull(GitCLI.git(_workTree, "symbolic-ref", "--quiet", "--short", HEAD));
+    }
+
+    /**
+     * Get the commit id HEAD currently points to
+     * @return The commit id, or null if the current branch has no commits yet
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public String getHeadCommit() throws IOException, InterruptedException {
+        return resolve(HEAD);
+    }
+
+    /**
+     * Resolve a ref to the object id it points to.
+     * Full names (refs/heads/main) and shorthands (main, origin/main, v1.0) are read directly,
+     * revision expressions (HEAD~1, main@{upstream}, ...) are passed on to `git rev-parse`.
+     * A full object id is returned if it is a loose object, otherwise `git rev-parse` checks that it exists.
+     * @param refName The ref to resolve
+     * @return The object id, or null if the ref does not exist
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public String resolve(String refName) throws IOException, InterruptedException {
+        if (!_useCLI && isPlainRefName(refName) && !isObjectId(refName)) {
+            try {
+                for (String rule : REF_RULES) {
+                    String candidate = String.format(rule, refName);
+                    if (exists(candidate)) {
+                        return resolveFully(candidate);
+                    }
+                }
+                if (!isHex(refName, true)) {
+                    return null;
+                }
+                // Possibly an abbreviated or uppercase object id, which needs the object database to expand
+            } catch (UnrecognizedRefException e) {
+                LOGGER.atFine().withCause(e).log("Falling back to the Git CLI to resolve %s", refName);
+            }
+        }
+        if (!_useCLI && isObjectId(refName) && isLooseObject(refName)) {
+            return refName;
+        }
+        // rev-parse --verify accepts any full object id without checking it exists, ^{object} makes it look the object up
+        boolean fullObjectId = isObjectIdLength(refName) && isHex(refName, true);
+        String revision = fullObjectId ? refName + "^{object}" : refName;
+        return outputOrNull(GitCLI.git(_workTree, "rev-parse", "--verify", "--quiet", revision));
+    }
+
+    private static String outputOrNull(CLIOutput output) {
+        if (output.getExitCode() != 0) {
+            return null;
+        }
+        String value = output.getStdOut().trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private boolean isLooseObject(String objectId) {
+        return Files.isRegularFile(_commonDir.resolve("objects").resolve(objectId.substring(0, 2)).resolve(objectId.substring(2)));
+    }
+
+    private boolean exists(String refName) throws IOException, UnrecognizedRefException {
+        return readLooseRef(refName) != null || getPackedRefs().containsKey(refName);
+    }
+
+    private String resolveFully(String refName) throws IOException, UnrecognizedRefException {
+        String current = refName;
+        for (int depth = 0; depth <= MAX_SYMREF_DEPTH; depth++) {
+            String value = readLooseRef(current);
+            if (value == null) {
+                // A dangling symref (e.g. HEAD of an unborn branch) resolves to nothing
+                return getPackedRefs().get(current);
+            }
+            if (value.startsWith(SYMREF_PREFIX)) {
+                current = value.substring(SYMREF_PREFIX.length()).trim();
+            } else if (isObjectId(value)) {
+                return value;
+            } else {
+                throw new UnrecognizedRefException("Unrecognized contents in ref " + current + ": " + value);
+            }
+        }
+        throw new UnrecognizedRefException("Symbolic ref nesting too deep: " + refName);
+    }
+
+    private String readLooseRef(String refName) throws IOException, UnrecognizedRefException {
+        Path refFile = refDirectory(refName).resolve(refName);
+        try {
+            String line = readFirstLine(refFile);
+            return line.isEmpty() ? null : line;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (CharacterCodingException e) {
+            // A binary file such as the index, which cannot be a ref
+            throw new UnrecognizedRefException("Ref file is not text: " + refFile);
+        } catch (IOException e) {
+            // Directories such as refs/heads/feature when resolving refs/heads/feature/x
+            if (Files.isDirectory(refFile)) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Per-worktree refs live in the worktree's git directory, everything else is shared in the common directory.
+     */
+    private Path refDirectory(String refName) {
+        boolean perWorktree = !refName.startsWith("refs/")
+                || refName.startsWith("refs/worktree/")
+                || refName.startsWith("refs/bisect/")
+                || refName.startsWith("refs/rewritten/");
+        return perWorktree ? _gitDir : _commonDir;
+    }
+
+    private Map<String, String> getPackedRefs() throws IOException {
+        Path packedRefsFile = _commonDir.resolve("packed-refs");
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(packedRefsFile, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            _packedRefs = null;
+            return Collections.emptyMap();
+        }
+        PackedRefs cached = _packedRefs;
+        if (cached != null && cached.isCurrent(attributes)) {
+            return cached._refs;
+        }
+        PackedRefs loaded = PackedRefs.load(packedRefsFile, attributes);
+        _packedRefs = loaded;
+        return loaded._refs;
+    }
+
+    private static String readFirstLine(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            return line == null ? "" : line.trim();
+        }
+    }
+
+    /**
+     * Anything Git would not accept as a ref name is a revision expression only the CLI can evaluate
+     */
+    private static boolean isPlainRefName(String refName) {
+        // A lone @ is shorthand for HEAD
+        if (refName.isEmpty() || refName.equals("@") || refName.startsWith("-") || refName.startsWith("/") || refName.endsWith("/")
+                || refName.endsWith(".lock") || refName.contains("..") || refName.contains("//") || refName.contains("@{")) {
+            return false;
+        }
+        for (int i = 0; i < refName.length(); i++) {
+            char c = refName.charAt(i);
+            if (c <= ' ' || c == '~' || c == '^' || c == ':' || c == '?' || c == '*' || c == '[' || c == '\\' || c == 0x7f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isObjectId(String value) {
+        // Git always writes object ids in lowercase
+        return isObjectIdLength(value) && isHex(value, false);
+    }
+
+    private static boolean isObjectIdLength(String value) {
+        // SHA-1 and SHA-256 repositories
+        return value.length() == 40 || value.length() == 64;
+    }
+
+    private static boolean isHex(String value, boolean allowUpperCase) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean upperCaseHex = allowUpperCase && c >= 'A' && c <= 'F';
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || upperCaseHex)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parsed contents of packed-refs, kept until the file's modification time or size changes
+     */
+    private static final class PackedRefs {
+        private final FileTime _lastModified;
+        private final long _size;
+        private final Map<String, String> _refs;
+
+        private PackedRefs(FileTime lastModified, long size, Map<String, String> refs) {
+            _lastModified = lastModified;
+            _size = size;
+            _refs = refs;
+        }
+
+        private boolean isCurrent(BasicFileAttributes attributes) {
+            return _lastModified.equals(attributes.lastModifiedTime()) && _size == attributes.size();
+        }
+
+        private static PackedRefs load(Path packedRefsFile, BasicFileAttributes attributes) throws IOException {
+            List<String> lines = Files.readAllLines(packedRefsFile, StandardCharsets.UTF_8);
+            Map<String, String> refs = new HashMap<>();
+            for (String line : lines) {
+                // '#' is the header, '^' is the peeled object of the preceding annotated tag
+                if (line.isEmpty() || line.charAt(0) == '#' || line.charAt(0) == '^') {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                if (space > 0) {
+                    refs.put(line.substring(space + 1).trim(), line.substring(0, space));
+                }
+            }
+            return new PackedRefs(attributes.lastModifiedTime(), attributes.size(), Collections.unmodifiableMap(refs));
+        }
+    }
+
+    private static final class UnrecognizedRefException extends Exception {
+        private UnrecognizedRefException(String message) {
+            super(message);
+        }
+    }
+}
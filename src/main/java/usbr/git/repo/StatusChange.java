@@ -0,0 +1,61 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+/**
+ * A difference between two consecutive status snapshots of a repository
+ */
+public final class StatusChange {
+
+    public enum Kind {
+        /** The path was clean (or unknown) and now has a status entry */
+        ADDED,
+        /** The path had a status entry and is now clean */
+        REMOVED,
+        /** The path's status entry changed */
+        MODIFIED
+    }
+
+    private final Kind _kind;
+    private final StatusEntry _previous;
+    private final StatusEntry _current;
+
+    StatusChange(Kind kind, StatusEntry previous, StatusEntry current) {
+        _kind = kind;
+        _previous = previous;
+        _current = current;
+    }
+
+    public Kind getKind() {
+        return _kind;
+    }
+
+    public String getPath() {
+        return _current != null ? _current.getPath() : _previous.getPath();
+    }
+
+    /**
+     * @return The entry before the change, or null if {@link Kind#ADDED}
+     */
+    public StatusEntry getPrevious() {
+        return _previous;
+    }
+
+    /**
+     * @return The entry after the change, or null if {@link Kind#REMOVED}
+     */
+    public StatusEntry getCurrent() {
+        return _current;
+    }
+
+    @Override
+    public String toString() {
+        return _kind + " " + (_current != null ? _current : _previous);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A changed, untracked or ignored path, as reported by `git status --porcelain=v2`.
+ *
+ * The fields preceding the path are kept as the raw bytes Git printed, so an unchanged entry can be
+ * recognized on the next refresh without parsing it again.
+ */
+public final class StatusEntry {
+
+    public enum Type {
+        /** Ordinary changed entry, record type "1" */
+        CHANGED('1', 7),
+        /** Renamed or copied entry, record type "2" */
+        RENAMED('2', 8),
+        /** Unmerged entry, record type "u" */
+        UNMERGED('u', 9),
+        /** Record type "?" */
+        UNTRACKED('?', 0),
+        /** Record type "!" */
+        IGNORED('!', 0);
+
+        private final char _recordType;
+        private final int _fieldsBeforePath;
+
+        Type(char recordType, int fieldsBeforePath) {
+            _recordType = recordType;
+            _fieldsBeforePath = fieldsBeforePath;
+        }
+
+        /**
+         * @return The number of space separated fields between the record type and the path
+         */
+        int getFieldsBeforePath() {
+            return _fieldsBeforePath;
+        }
+
+        static Type forRecordType(byte recordType) {
+            for (Type type : values()) {
+                if (type._recordType == recordType) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Type _type;
+    private final String _path;
+    private final String _originalPath;
+    private final byte[] _fields;
+
+    StatusEntry(Type type, String path, String originalPath, byte[] fields) {
+        _type = type;
+        _path = path;
+        _originalPath = originalPath;
+        _fields = fields;
+    }
+
+    public Type getType() {
+        return _type;
+    }
+
+    /**
+     * @return The path relative to the repository root, using '/' separators
+     */
+    public String getPath() {
+        return _path;
+    }
+
+    /**
+     * @return The path the entry was renamed or copied from, or null if it is not a {@link Type#RENAMED} entry
+     */
+    public String getOriginalPath() {
+        return _originalPath;
+    }
+
+    /**
+     * @return The X status code: the state of the index relative to HEAD. '?' or '!' for untracked and ignored entries.
+     */
+    public char getIndexStatus() {
+        return isTracked() ? (char) _fields[0] : _type._recordType;
+    }
+
+    /**
+     * @return The Y status code: the state of the working tree relative to the index. '?' or '!' for untracked and ignored entries.
+     */
+    public char getWorkTreeStatus() {
+        return isTracked() ? (char) _fields[1] : _type._recordType;
+    }
+
+    /**
+     * @return The fields between the record type and the path (modes, object ids, submodule state, ...)
+     */
+    public String getFields() {
+        return new String(_fields, StandardCharsets.UTF_8);
+    }
+
+    private boolean isTracked() {
+        return _type != Type.UNTRACKED && _type != Type.IGNORED;
+    }
+
+    boolean hasFields(byte[] buffer, int offset, int length) {
+        if (length != _fields.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[offset + i] != _fields[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        StatusEntry other = (StatusEntry) o;
+        return _type == other._type
+                && _path.equals(other._path)
+                && Objects.equals(_originalPath, other._originalPath)
+                && Arrays.equals(_fields, other._fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(_type, _path, _originalPath);
+    }
+
+    @Override
+    public String toString() {
+        return "" + getIndexStatus() + getWorkTreeStatus() + " " + (_originalPath == null ? _path : _originalPath + " -> " + _path);
+    }
+}
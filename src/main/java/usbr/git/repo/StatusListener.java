@@ -0,0 +1,26 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Notified by {@link StatusMonitor} when a refresh finds the status of a repository has changed
+ */
+@FunctionalInterface
+public interface StatusListener {
+
+    /**
+     * @param repository The repository that was refreshed
+     * @param snapshot The new status of the repository
+     * @param changes The entries that changed since the previous refresh. Empty if only the branch headers changed.
+     */
+    void statusChanged(Path repository, StatusSnapshot snapshot, List<StatusChange> changes);
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+import com.google.common.flogger.FluentLogger;
+import usbr.git.cli.CLIOutput;
+import usbr.git.cli.GitCLI;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Polls the status of repositories and reports what changed between polls.
+ *
+ * Each refresh streams `git status --porcelain=v2 -z --branch` through {@link PorcelainStatusParser},
+ * and listeners are only given the entries that were added, removed or modified since the previous refresh.
+ * Repositories are identified by their working tree, so any directory within it refers to the same snapshot.
+ */
+public final class StatusMonitor {
+
+    private static final FluentLogger LOGGER = FluentLogger.forEnclosingClass();
+
+    // --no-optional-locks keeps polling from contending with the user's own git commands for index.lock
+    private static final List<String> STATUS_ARGUMENTS = Collections.unmodifiableList(Arrays.asList(
+            "--no-optional-locks", "status", "--porcelain=v2", "-z", "--branch"));
+
+    private final Map<Path, StatusSnapshot> _snapshots = new ConcurrentHashMap<>();
+    private final Map<Path, Object> _repositoryLocks = new ConcurrentHashMap<>();
+    private final List<StatusListener> _listeners = new CopyOnWriteArrayList<>();
+
+    public StatusMonitor() {
+        super();
+    }
+
+    public void addListener(StatusListener listener) {
+        _listeners.add(listener);
+    }
+
+    public void removeListener(StatusListener listener) {
+        _listeners.remove(listener);
+    }
+
+    /**
+     * @param repository A directory in the repository's working tree
+     * @return The status from the last refresh, or null if the repository has not been refreshed
+     */
+    public StatusSnapshot getSnapshot(Path repository) {
+        return _snapshots.get(getKey(repository));
+    }
+
+    /**
+     * Drop the snapshot kept for a repository, e.g. when its view is closed.
+     * Waits for a refresh in progress, so its snapshot is not stored after this returns.
+     * The repository's lock is kept, so a later refresh never runs alongside one still holding it.
+     * @param repository A directory in the repository's working tree
+     */
+    public void forget(Path repository) {
+        Path key = getKey(repository);
+        Object lock = _repositoryLocks.get(key);
+        if (lock == null) {
+            return;
+        }
+        synchronized (lock) {
+            _snapshots.remove(key);
+        }
+    }
+
+    /**
+     * Run git status on the repository and notify listeners of any changes since the last refresh.
+     * The first refresh of a repository reports every entry as added.
+     * @param repository A directory in the repository's working tree
+     * @return The changes since the last refresh
+     * @throws IOException If git status failed
+     * @throws InterruptedException
+     */
+    public List<StatusChange> refresh(Path repository) throws IOException, InterruptedException {
+        Path key = getKey(repository);
+        Object lock = _repositoryLocks.computeIfAbsent(key, path -> new Object());
+        synchronized (lock) {
+            PorcelainStatusParser parser = new PorcelainStatusParser();
+            StatusSnapshot previous = previousSnapshot(key);
+            StatusSnapshot[] parsed = new StatusSnapshot[1];
+            CLIOutput output = GitCLI.git(key, STATUS_ARGUMENTS, Collections.<String, String>emptyMap(),
+                    stdOut -> parsed[0] = parser.parse(stdOut, previous));
+            if (output.getExitCode() != 0) {
+                throw new IOException("git status exited with status: " + output.getExitCode() + ", stderr: " + output.getStdErr());
+            }
+            return update(key, parsed[0]);
+        }
+    }
+
+    /**
+     * Refresh from already captured porcelain v2 output
+     */
+    List<StatusChange> refresh(Path repository, InputStream statusOutput) throws IOException {
+        Path key = getKey(repository);
+        Object lock = _repositoryLocks.computeIfAbsent(key, path -> new Object());
+        synchronized (lock) {
+            return update(key, new PorcelainStatusParser().parse(statusOutput, previousSnapshot(key)));
+        }
+    }
+
+    private StatusSnapshot previousSnapshot(Path key) {
+        StatusSnapshot previous = _snapshots.get(key);
+        return previous == null ? StatusSnapshot.EMPTY : previous;
+    }
+
+    private List<StatusChange> update(Path key, StatusSnapshot snapshot) {
+        StatusSnapshot previous = previousSnapshot(key);
+        _snapshots.put(key, snapshot);
+        List<StatusChange> changes = snapshot.changesSince(previous);
+        boolean branchChanged = !Objects.equals(previous.getBranch(), snapshot.getBranch());
+        if (changes.isEmpty() && !branchChanged) {
+            return Collections.emptyList();
+        }
+        LOGGER.atFine().log("Status of %s changed: %s entries", key, changes.size());
+        List<StatusChange> unmodifiableChanges = Collections.unmodifiableList(changes);
+        for (StatusListener listener : _listeners) {
+            try {
+                listener.statusChanged(key, snapshot, unmodifiableChanges);
+            } catch (RuntimeException e) {
+                LOGGER.atWarning().withCause(e).log("Status listener failed");
+            }
+        }
+        return unmodifiableChanges;
+    }
+
+    private static Path getKey(Path repository) {
+        try {
+            return RefResolver.forDirectory(repository).getWorkTree();
+        } catch (IOException e) {
+            // Not in a repository, which git status will report
+            return repository.toAbsolutePath().normalize();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The status of a repository at the time of one refresh
+ */
+public final class StatusSnapshot {
+
+    static final StatusSnapshot EMPTY = new StatusSnapshot(null, Collections.<String, StatusEntry>emptyMap());
+
+    private final BranchStatus _branch;
+    private final Map<String, StatusEntry> _entries;
+
+    StatusSnapshot(BranchStatus branch, Map<String, StatusEntry> entries) {
+        _branch = branch;
+        _entries = Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * @return The branch headers, or null if Git did not report them
+     */
+    public BranchStatus getBranch() {
+        return _branch;
+    }
+
+    /**
+     * @param path A path relative to the repository root, using '/' separators
+     * @return The entry for the path, or null if the path is clean
+     */
+    public StatusEntry getEntry(String path) {
+        return _entries.get(path);
+    }
+
+    /**
+     * @return All entries, in the order Git reported them
+     */
+    public Collection<StatusEntry> getEntries() {
+        return _entries.values();
+    }
+
+    public boolean isClean() {
+        for (StatusEntry entry : _entries.values()) {
+            if (entry.getType() != StatusEntry.Type.UNTRACKED && entry.getType() != StatusEntry.Type.IGNORED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compare with the snapshot taken before this one. Unchanged entries are shared between snapshots,
+     * so most of the comparison is an identity check.
+     * @param previous The earlier snapshot
+     * @return The entries that were added, removed or modified since the earlier snapshot
+     */
+    public List<StatusChange> changesSince(StatusSnapshot previous) {
+        List<StatusChange> changes = new ArrayList<>();
+        for (StatusEntry current : _entries.values()) {
+            StatusEntry before = previous._entries.get(current.getPath());
+            if (before == null) {
+                changes.add(new StatusChange(StatusChange.Kind.ADDED, null, current));
+            } else if (before != current && !before.equals(current)) {
+                changes.add(new StatusChange(StatusChange.Kind.MODIFIED, before, current));
+            }
+        }
+        for (StatusEntry before : previous._entries.values()) {
+            if (!_entries.containsKey(before.getPath())) {
+                changes.add(new StatusChange(StatusChange.Kind.REMOVED, before, null));
+            }
+        }
+        return changes;
+    }
+}
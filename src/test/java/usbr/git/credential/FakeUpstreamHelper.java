@@ -0,0 +1,46 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.credential;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+/**
+ * Stand-in for Git Credential Manager. Records each invocation to the log file given as the first argument,
+ * and answers every get with a fixed username and password.
+ */
+public final class FakeUpstreamHelper {
+
+    static final String USERNAME = "oauth2";
+    static final String PASSWORD = "fake-token";
+
+    private FakeUpstreamHelper() {
+        super();
+    }
+
+    public static void main(String[] args) throws IOException {
+        String operation = args[args.length - 1];
+        Credential request = Credential.read(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+        Files.write(Paths.get(args[0]), Collections.singletonList(operation + " " + request.getCacheKey()),
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if ("get".equals(operation)) {
+            Credential response = new Credential();
+            response.set(Credential.USERNAME, USERNAME);
+            response.set(Credential.PASSWORD, PASSWORD);
+            response.write(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        }
+    }
+}
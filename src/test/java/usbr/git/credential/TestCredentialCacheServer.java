@@ -0,0 +1,243 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.credential;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import usbr.git.GitlabConfiguration;
+import usbr.git.cli.CLIOutput;
+import usbr.git.cli.GitCLI;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class TestCredentialCacheServer {
+
+    private static final String GITLAB_URL = "https://gitlab.example.com";
+
+    @TempDir
+    Path _tempDir;
+
+    @Test
+    public void testUpstreamOnlyCalledOnMiss() throws IOException, InterruptedException {
+        Path log = _tempDir.resolve("upstream.log");
+        try (CredentialCacheServer server = startServer(log, new CredentialCache(Duration.ofMinutes(15)))) {
+            Credential first = server.handle(CredentialCacheServer.GET, request("gitlab.example.com"));
+            Credential second = server.handle(CredentialCacheServer.GET, request("gitlab.example.com"));
+
+            assertEquals(FakeUpstreamHelper.PASSWORD, first.get(Credential.PASSWORD));
+            assertEquals(FakeUpstreamHelper.PASSWORD, second.get(Credential.PASSWORD));
+            assertEquals(Collections.singletonList("get https://gitlab.example.com"), Files.readAllLines(log));
+        }
+    }
+
+    @Test
+    public void testFirstStoreOfUpstreamCredentialForwarded() throws IOException, InterruptedException {
+        Path log = _tempDir.resolve("upstream.log");
+        try (CredentialCacheServer server = startServer(log, new CredentialCache(Duration.ofMinutes(15)))) {
+            server.handle(CredentialCacheServer.GET, request("gitlab.example.com"));
+            Credential approved = request("gitlab.example.com");
+            approved.set(Credential.USERNAME, FakeUpstreamHelper.USERNAME);
+            approved.set(Credential.PASSWORD, FakeUpstreamHelper.PASSWORD);
+            server.handle(CredentialCacheServer.STORE, approved);
+            server.handle(CredentialCacheServer.GET, request("gitlab.example.com"));
+            server.handle(CredentialCacheServer.STORE, approved);
+
+            assertEquals(Arrays.asList("get https://gitlab.example.com", "store https://gitlab.example.com"), Files.readAllLines(log));
+        }
+    }
+
+    @Test
+    public void testEraseForwardedAndClearsCache() throws IOException, InterruptedException {
+        Path log = _tempDir.resolve("upstream.log");
+        try (CredentialCacheServer server = startServer(log, new CredentialCache(Duration.ofMinutes(15)))) {
+            server.handle(CredentialCacheServer.GET, request("gitlab.example.com"));
+            server.handle(CredentialCacheServer.ERASE, request("gitlab.example.com"));
+            server.handle(CredentialCacheServer.GET, request("gitlab.example.com"));
+
+            assertEquals(Arrays.asList("get https://gitlab.example.com", "erase https://gitlab.example.com",
+                    "get https://gitlab.example.com"), Files.readAllLines(log));
+        }
+    }
+
+    @Test
+    public void testUnconfiguredHostIgnored() throws IOException, InterruptedException {
+        Path log = _tempDir.resolve("upstream.log");
+        try (CredentialCacheServer server = startServer(log, new CredentialCache(Duration.ofMinutes(15)))) {
+            Credential response = server.handle(CredentialCacheServer.GET, request("github.com"));
+
+            assertNull(response.get(Credential.PASSWORD));
+            assertFalse(Files.exists(log));
+        }
+    }
+
+    @Test
+    public void testClientRoundTrip() throws IOException {
+        Path log = _tempDir.resolve("upstream.log");
+        try (CredentialCacheServer server = startServer(log, new CredentialCache(Duration.ofMinutes(15)))) {
+            String port = Integer.toString(server.getPort());
+            String response = runClient("get", "protocol=https\nhost=gitlab.example.com\n\n", port, server.getToken());
+            Credential credential = Credential.read(new BufferedReader(new StringReader(response)));
+
+            assertEquals(FakeUpstreamHelper.USERNAME, credential.get(Credential.USERNAME));
+            assertEquals(FakeUpstreamHelper.PASSWORD, credential.get(Credential.PASSWORD));
+        }
+    }
+
+    @Test
+    public void testClientWithInvalidTokenGetsNothing() throws IOException {
+        Path log = _tempDir.resolve("upstream.log");
+        try (CredentialCacheServer server = startServer(log, new CredentialCache(Duration.ofMinutes(15)))) {
+            String port = Integer.toString(server.getPort());
+            String response = runClient("get", "protocol=https\nhost=gitlab.example.com\n\n", port, "wrong");
+
+            assertEquals("", response);
+            assertFalse(Files.exists(log));
+        }
+    }
+
+    @Test
+    public void testCacheEntriesExpire() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+        CredentialCache cache = new CredentialCache(Duration.ofMinutes(15), clock);
+        Credential credential = request("gitlab.example.com");
+        credential.set(Credential.USERNAME, "user");
+        credential.set(Credential.PASSWORD, "secret");
+        cache.store(credential);
+
+        clock._now = clock._now.plus(Duration.ofMinutes(14));
+        assertEquals("secret", cache.get(request("gitlab.example.com")).get(Credential.PASSWORD));
+        clock._now = clock._now.plus(Duration.ofMinutes(2));
+        assertNull(cache.get(request("gitlab.example.com")));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPasswordExpiryShortensTimeToLive() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+        CredentialCache cache = new CredentialCache(Duration.ofMinutes(15), clock);
+        Credential credential = request("gitlab.example.com");
+        credential.set(Credential.USERNAME, "user");
+        credential.set(Credential.PASSWORD, "secret");
+        credential.set(Credential.PASSWORD_EXPIRY_UTC, Long.toString(clock._now.plus(Duration.ofMinutes(5)).getEpochSecond()));
+        cache.store(credential);
+
+        clock._now = clock._now.plus(Duration.ofMinutes(6));
+        assertNull(cache.get(request("gitlab.example.com")));
+    }
+
+    @Test
+    public void testGitEnvironmentRegistersHelper() throws IOException {
+        try (CredentialCacheServer server = startServer(_tempDir.resolve("upstream.log"), new CredentialCache(Duration.ofMinutes(15)))) {
+            Map<String, String> environment = server.getGitEnvironment("!helper");
+            int first = Integer.parseInt(environment.get("GIT_CONFIG_COUNT")) - 2;
+
+            assertEquals("credential.https://gitlab.example.com.helper", environment.get("GIT_CONFIG_KEY_" + first));
+            assertEquals("", environment.get("GIT_CONFIG_VALUE_" + first));
+            assertEquals("credential.https://gitlab.example.com.helper", environment.get("GIT_CONFIG_KEY_" + (first + 1)));
+            assertEquals("!helper", environment.get("GIT_CONFIG_VALUE_" + (first + 1)));
+            assertEquals(Integer.toString(server.getPort()), environment.get(CredentialCacheServer.PORT_ENVIRONMENT_VARIABLE));
+        }
+    }
+
+    @Test
+    public void testRegisteredWithGitCLIUntilClosed() throws IOException, InterruptedException {
+        assumeTrue(GitCLI.isGitExectuable());
+        String helperKey = "credential." + GITLAB_URL + ".helper";
+        try (CredentialCacheServer server = startServer(_tempDir.resolve("upstream.log"), new CredentialCache(Duration.ofMinutes(15)))) {
+            server.registerWithGitCLI();
+            CLIOutput output = GitCLI.git(_tempDir, "config", "--get-all", helperKey);
+
+            assertTrue(output.getStdOut().contains(CredentialHelperClient.class.getName()), output.getStdOut());
+        }
+        assertTrue(GitCLI.getDefaultEnvironment().isEmpty());
+        assertFalse(GitCLI.git(_tempDir, "config", "--get-all", helperKey).getStdOut().contains(CredentialHelperClient.class.getName()));
+    }
+
+    @Test
+    public void testHelperCommandUsesClientCodeSource() {
+        String codeSource = CredentialCacheServer.getClientCodeSource().toString().replace('\\', '/');
+        String command = CredentialCacheServer.getClientHelperCommand();
+
+        assertTrue(command.contains("-cp \"" + codeSource + "\""), command);
+        assertTrue(command.endsWith(CredentialHelperClient.class.getName()), command);
+    }
+
+    @Test
+    public void testUpstreamHelperConfigParsing() {
+        assertEquals(Arrays.asList("git", "credential-manager"), UpstreamCredentialHelper.fromHelperConfig("manager").getCommand());
+        assertEquals(Arrays.asList("sh", "-c", "echo hi \"$@\"", "echo hi"), UpstreamCredentialHelper.fromHelperConfig("!echo hi", "sh").getCommand());
+    }
+
+    private CredentialCacheServer startServer(Path log, CredentialCache cache) throws IOException {
+        GitlabConfiguration gitlabConfig = new GitlabConfiguration();
+        gitlabConfig.setUrl(new URL(GITLAB_URL));
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        UpstreamCredentialHelper upstream = new UpstreamCredentialHelper(Arrays.asList(java, "-cp",
+                System.getProperty("java.class.path"), FakeUpstreamHelper.class.getName(), log.toString()));
+        List<GitlabConfiguration> gitlabConfigs = Collections.singletonList(gitlabConfig);
+        return CredentialCacheServer.start(gitlabConfigs, upstream, cache);
+    }
+
+    private static Credential request(String host) {
+        Credential credential = new Credential();
+        credential.set(Credential.PROTOCOL, "https");
+        credential.set(Credential.HOST, host);
+        return credential;
+    }
+
+    private static String runClient(String operation, String input, String port, String token) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CredentialHelperClient.run(operation, new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out, port, token);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant _now;
+
+        private MutableClock(Instant now) {
+            _now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return _now;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.credential;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import usbr.git.cli.GitCLI;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class TestCredentialHelperChain {
+
+    private static final String GITLAB_URL = "https://gitlab.example.com";
+
+    @TempDir
+    Path _tempDir;
+
+    @Test
+    public void testEmptyValueClearsEarlierHelpers() throws IOException {
+        String config = record("credential.helper", "store")
+                + record("credential.https://gitlab.example.com.helper", "")
+                + record("credential.https://gitlab.example.com.helper", "manager-core")
+                + record("credential.helper", "cache");
+
+        assertEquals(Arrays.asList("manager-core", "cache"), CredentialHelperChain.parseHelperConfig(config, new URL(GITLAB_URL)));
+    }
+
+    @Test
+    public void testOtherUrlsIgnored() throws IOException {
+        String config = record("credential.https://github.com.helper", "github")
+                + record("credential.https://gitlab.example.com.helper", "")
+                + record("credential.https://*.example.com.helper", "wildcard")
+                + record("credential.https://gitlab.example.com:8443.helper", "other-port")
+                + record("credential.https://gitlab.example.com/group.helper", "group");
+
+        assertEquals(Collections.singletonList("wildcard"), CredentialHelperChain.parseHelperConfig(config, new URL(GITLAB_URL)));
+        assertEquals(Arrays.asList("wildcard", "group"), CredentialHelperChain.parseHelperConfig(config, new URL(GITLAB_URL + "/group/project")));
+    }
+
+    @Test
+    public void testCacheHelperSkipped() throws IOException {
+        String config = record("credential.helper", "manager")
+                + record("credential.https://gitlab.example.com.helper", CredentialCacheServer.getClientHelperCommand());
+
+        assertEquals(Collections.singletonList("manager"), CredentialHelperChain.parseHelperConfig(config, new URL(GITLAB_URL)));
+    }
+
+    @Test
+    public void testGetStopsAtFirstPasswordAndStoreReachesAll() throws IOException, InterruptedException {
+        Path firstLog = _tempDir.resolve("first.log");
+        Path secondLog = _tempDir.resolve("second.log");
+        CredentialHelperChain chain = new CredentialHelperChain(Arrays.asList(fakeHelper(firstLog), fakeHelper(secondLog)));
+
+        Credential response = chain.execute(CredentialCacheServer.GET, request());
+        assertEquals(FakeUpstreamHelper.PASSWORD, response.get(Credential.PASSWORD));
+        assertFalse(Files.exists(secondLog));
+
+        Credential approved = request();
+        approved.set(Credential.USERNAME, response.get(Credential.USERNAME));
+        approved.set(Credential.PASSWORD, response.get(Credential.PASSWORD));
+        chain.execute(CredentialCacheServer.STORE, approved);
+        assertEquals(Arrays.asList("get https://gitlab.example.com", "store https://gitlab.example.com"), Files.readAllLines(firstLog));
+        assertEquals(Collections.singletonList("store https://gitlab.example.com"), Files.readAllLines(secondLog));
+    }
+
+    @Test
+    public void testForUrlReadsGitConfig() throws IOException, InterruptedException {
+        assumeTrue(GitCLI.isGitExectuable());
+        Path globalConfig = _tempDir.resolve("gitconfig");
+        Files.write(globalConfig, Arrays.asList("[credential]", "\thelper = store", "\thelper =", "\thelper = manager-core",
+                "[credential \"https://gitlab.example.com\"]", "\thelper = /opt/gcm/git-credential-manager get-token"), StandardCharsets.UTF_8);
+        Map<String, String> environment = new HashMap<>();
+        environment.put("GIT_CONFIG_GLOBAL", globalConfig.toString());
+        environment.put("GIT_CONFIG_NOSYSTEM", "1");
+        // A registered cache must not hide the user's helpers
+        environment.put("GIT_CONFIG_COUNT", "1");
+        environment.put("GIT_CONFIG_KEY_0", "credential.helper");
+        environment.put("GIT_CONFIG_VALUE_0", "");
+        Map<String, String> previous = GitCLI.getDefaultEnvironment();
+        GitCLI.setDefaultEnvironment(environment);
+        try {
+            CredentialHelperChain chain = CredentialHelperChain.forUrl(new URL(GITLAB_URL));
+
+            List<List<String>> commands = new ArrayList<>();
+            for (UpstreamCredentialHelper helper : chain.getHelpers()) {
+                commands.add(helper.getCommand());
+            }
+            assertEquals(Arrays.asList(Arrays.asList("git", "credential-manager-core"),
+                    Arrays.asList("/opt/gcm/git-credential-manager", "get-token")), commands);
+        } finally {
+            GitCLI.setDefaultEnvironment(previous);
+        }
+    }
+
+    private static UpstreamCredentialHelper fakeHelper(Path log) {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return new UpstreamCredentialHelper(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+                FakeUpstreamHelper.class.getName(), log.toString()));
+    }
+
+    private static Credential request() {
+        Credential credential = new Credential();
+        credential.set(Credential.PROTOCOL, "https");
+        credential.set(Credential.HOST, "gitlab.example.com");
+        return credential;
+    }
+
+    private static String record(String key, String value) {
+        return key + "\n" + value + "\0";
+    }
+}
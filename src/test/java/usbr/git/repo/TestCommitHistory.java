@@ -0,0 +1,221 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import usbr.git.cli.CLIOutput;
+import usbr.git.cli.GitCLI;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class TestCommitHistory {
+
+    private static final String ROOT_ID = "1111111111111111111111111111111111111111";
+    private static final String CHILD_ID = "2222222222222222222222222222222222222222";
+    private static final String LOG_OUTPUT = logRecord(CHILD_ID, ROOT_ID, "Jane Doe", "jane@example.com", "1700000100",
+            "John Roe", "john@example.com", "1700000200", "Update scenario")
+            + logRecord(ROOT_ID, "", "Jane Doe", "jane@example.com", "1700000000",
+            "Jane Doe", "jane@example.com", "1700000000", "Initial commit");
+
+    @TempDir
+    Path _tempDir;
+
+    @Test
+    public void testParseLogOutput() throws IOException {
+        CommitCache cache = new CommitCache();
+        List<CommitInfo> commits = new ArrayList<>();
+        CommitHistory.parse(new ByteArrayInputStream(LOG_OUTPUT.getBytes(StandardCharsets.UTF_8)), cache, commits);
+
+        assertEquals(2, commits.size());
+        CommitInfo child = commits.get(0);
+        assertEquals(CHILD_ID, child.getId());
+        assertEquals(Collections.singletonList(ROOT_ID), child.getParentIds());
+        assertEquals("Jane Doe", child.getAuthorName());
+        assertEquals("jane@example.com", child.getAuthorEmail());
+        assertEquals(Instant.ofEpochSecond(1700000100L), child.getAuthorTime());
+        assertEquals("John Roe", child.getCommitterName());
+        assertEquals("john@example.com", child.getCommitterEmail());
+        assertEquals(Instant.ofEpochSecond(1700000200L), child.getCommitTime());
+        assertEquals("Update scenario", child.getSubject());
+
+        CommitInfo root = commits.get(1);
+        assertTrue(root.getParentIds().isEmpty());
+        assertEquals("Initial commit", root.getSubject());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testParseReusesCachedCommits() throws IOException {
+        CommitCache cache = new CommitCache();
+        List<CommitInfo> first = new ArrayList<>();
+        List<CommitInfo> second = new ArrayList<>();
+        CommitHistory.parse(new ByteArrayInputStream(LOG_OUTPUT.getBytes(StandardCharsets.UTF_8)), cache, first);
+        CommitHistory.parse(new ByteArrayInputStream(LOG_OUTPUT.getBytes(StandardCharsets.UTF_8)), cache, second);
+
+        assertSame(first.get(0), second.get(0));
+        assertSame(first.get(1), second.get(1));
+    }
+
+    @Test
+    public void testCacheEvictsLeastRecentlyUsed() {
+        CommitCache cache = new CommitCache(2);
+        cache.put(commit("a"));
+        cache.put(commit("b"));
+        assertNotNull(cache.get("a"));
+        cache.put(commit("c"));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void testPagingRevisitsPagesWithoutGit() throws IOException, InterruptedException {
+        assumeTrue(GitCLI.isGitExectuable());
+        Path repository = createRepository(5);
+
+        CommitHistory history = new CommitHistory(repository);
+        CommitPage first = history.getFirstPage("HEAD", null, 2);
+        CommitPage second = history.getPage(first.getNextCursor());
+        CommitPage third = history.getPage(second.getNextCursor());
+
+        assertEquals(Arrays.asList("commit 4", "commit 3"), subjects(first));
+        assertEquals(Arrays.asList("commit 2", "commit 1"), subjects(second));
+        assertEquals(Collections.singletonList("commit 0"), subjects(third));
+        assertNull(first.getPreviousCursor());
+        assertNull(third.getNextCursor());
+
+        // With the repository gone, revisited pages can only come from the caches
+        Files.move(repository.resolve(".git"), _tempDir.resolve("moved.git"));
+        assertEquals(subjects(second), subjects(history.getPage(third.getPreviousCursor())));
+        assertEquals(subjects(first), subjects(history.getPage(second.getPreviousCursor())));
+    }
+
+    @Test
+    public void testIndexBoundedByCacheSize() throws IOException, InterruptedException {
+        assumeTrue(GitCLI.isGitExectuable());
+        Path repository = createRepository(10);
+
+        CommitHistory history = new CommitHistory(repository, new CommitCache(4));
+        CommitPage first = history.getFirstPage("HEAD", null, 2);
+        CommitPage page = first;
+        List<String> allSubjects = new ArrayList<>(subjects(page));
+        while (page.getNextCursor() != null) {
+            page = history.getPage(page.getNextCursor());
+            allSubjects.addAll(subjects(page));
+            assertTrue(history.getIndexedCommitCount() <= 4);
+        }
+        assertEquals(10, allSubjects.size());
+        assertEquals("commit 0", allSubjects.get(9));
+
+        // The first page fell out of the window and is read from git again
+        assertEquals(Arrays.asList("commit 9", "commit 8"), subjects(history.getPage(first.getCursor())));
+        assertEquals(Arrays.asList("commit 1", "commit 0"), subjects(history.getPage(page.getCursor())));
+
+        // Other queries share the same limit
+        history.getFirstPage("HEAD", "main.txt", 3);
+        assertTrue(history.getIndexedCommitCount() <= 4);
+    }
+
+    @Test
+    public void testPathFilter() throws IOException, InterruptedException {
+        assumeTrue(GitCLI.isGitExectuable());
+        Path repository = createRepository(3);
+        Files.write(repository.resolve("other.txt"), "other".getBytes(StandardCharsets.UTF_8));
+        git(repository, "add", "other.txt");
+        git(repository, "commit", "-m", "other");
+
+        CommitHistory history = new CommitHistory(repository);
+        CommitPage page = history.getFirstPage("HEAD", "other.txt", 10);
+
+        assertEquals(Collections.singletonList("other"), subjects(page));
+        assertNull(page.getNextCursor());
+        assertEquals(3, history.getFirstPage("HEAD", "main.txt", 10).getCommits().size());
+    }
+
+    @Test
+    public void testPathFilterFromSubdirectory() throws IOException, InterruptedException {
+        assumeTrue(GitCLI.isGitExectuable());
+        Path repository = createRepository(2);
+        Path subdirectory = Files.createDirectories(repository.resolve("scenarios"));
+        Files.write(subdirectory.resolve("base.txt"), "base".getBytes(StandardCharsets.UTF_8));
+        git(repository, "add", "scenarios/base.txt");
+        git(repository, "commit", "-m", "base scenario");
+
+        CommitHistory history = new CommitHistory(subdirectory);
+
+        assertEquals(Arrays.asList("commit 1", "commit 0"), subjects(history.getFirstPage("HEAD", "main.txt", 10)));
+        assertEquals(Collections.singletonList("base scenario"), subjects(history.getFirstPage("HEAD", "scenarios/base.txt", 10)));
+    }
+
+    @Test
+    public void testUnbornBranchHasNoHistory() throws IOException, InterruptedException {
+        assumeTrue(GitCLI.isGitExectuable());
+        Path repository = createRepository(0);
+
+        CommitPage page = new CommitHistory(repository).getFirstPage("HEAD", null, 10);
+
+        assertTrue(page.getCommits().isEmpty());
+        assertNull(page.getNextCursor());
+    }
+
+    private Path createRepository(int commitCount) throws IOException, InterruptedException {
+        Path repository = Files.createDirectories(_tempDir.resolve("repo"));
+        git(repository, "init");
+        for (int i = 0; i < commitCount; i++) {
+            Files.write(repository.resolve("main.txt"), ("version " + i).getBytes(StandardCharsets.UTF_8));
+            git(repository, "add", "main.txt");
+            git(repository, "commit", "-m", "commit " + i);
+        }
+        return repository;
+    }
+
+    private static void git(Path repository, String... arguments) throws IOException, InterruptedException {
+        List<String> withIdentity = new ArrayList<>(Arrays.asList("-c", "user.name=Test", "-c", "user.email=test@example.com",
+                "-c", "commit.gpgsign=false"));
+        withIdentity.addAll(Arrays.asList(arguments));
+        CLIOutput output = GitCLI.git(repository, withIdentity, Collections.<String, String>emptyMap());
+        assertEquals(0, output.getExitCode());
+    }
+
+    private static List<String> subjects(CommitPage page) {
+        List<String> subjects = new ArrayList<>();
+        for (CommitInfo commit : page.getCommits()) {
+            subjects.add(commit.getSubject());
+        }
+        return subjects;
+    }
+
+    private static String logRecord(String... fields) {
+        StringBuilder record = new StringBuilder();
+        for (String field : fields) {
+            record.append(field).append('\0');
+        }
+        return record.toString();
+    }
+
+    private static CommitInfo commit(String id) {
+        Instant time = Instant.ofEpochSecond(0L);
+        return new CommitInfo(id, Collections.<String>emptyList(), "", "", time, "", "", time, "");
+    }
+}
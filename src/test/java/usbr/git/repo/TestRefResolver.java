@@ -0,0 +1,269 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import usbr.git.cli.GitCLI;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class TestRefResolver {
+
+    private static final String COMMIT_A = "1111111111111111111111111111111111111111";
+    private static final String COMMIT_B = "2222222222222222222222222222222222222222";
+    private static final String TAG_OBJECT = "3333333333333333333333333333333333333333";
+
+    @TempDir
+    Path _tempDir;
+
+    @Test
+    public void testLooseBranch() throws IOException, InterruptedException {
+        Path gitDir = createGitDir(_tempDir.resolve("repo"));
+        write(gitDir.resolve("HEAD"), "ref: refs/heads/main\n");
+        write(gitDir.resolve("refs/heads/main"), COMMIT_A + "\n");
+
+        RefResolver resolver = RefResolver.forDirectory(_tempDir.resolve("repo"));
+        assertEquals("main", resolver.getCurrentBranch());
+        assertEquals(COMMIT_A, resolver.getHeadCommit());
+    }
+
+    @Test
+    public void testSearchesParentDirectories() throws IOException, InterruptedException {
+        Path gitDir = createGitDir(_tempDir.resolve("repo"));
+        write(gitDir.resolve("HEAD"), "ref: refs/heads/main\n");
+        Path subDirectory = Files.createDirectories(_tempDir.resolve("repo/scenarios/base"));
+
+        RefResolver resolver = RefResolver.forDirectory(subDirectory);
+        assertEquals(_tempDir.resolve("repo").toAbsolutePath().normalize(), resolver.getWorkTree());
+        assertEquals("main", resolver.getCurrentBranch());
+    }
+
+    @Test
+    public void testDetachedHead() throws IOException, InterruptedException {
+        Path gitDir = createGitDir(_tempDir.resolve("repo"));
+        write(gitDir.resolve("HEAD"), COMMIT_B + "\n");
+
+        RefResolver resolver = RefResolver.forDirectory(_tempDir.resolve("repo"));
+        assertNull(resolver.getCurrentBranch());
+        assertEquals(COMMIT_B, resolver.getHeadCommit());
+    }
+
+    @Test
+    public void testUnbornBranch() throws IOException, InterruptedException {
+        Path gitDir = createGitDir(_tempDir.resolve("repo"));
+        write(gitDir.resolve("HEAD"), "ref: refs/heads/main\n");
+
+        RefResolver resolver = RefResolver.forDirectory(_tempDir.resolve("repo"));
+        assertEquals("main", resolver.getCurrentBranch());
+        assertNull(resolver.getHeadCommit());
+    }
+
+    @Test
+    public void testPackedRefs() throws IOException, InterruptedException {
+        Path gitDir = createGitDir(_tempDir.resolve("repo"));
+        write(gitDir.resolve("HEAD"), "ref: refs/heads/main\n");
+        write(gitDir.resolve("packed-refs"), "# pack-refs with: peeled fully-peeled sorted \n"
+                + COMMIT_A + " refs/heads/main\n"
+                + TAG_OBJECT + " refs/tags/v1.0\n"
+                + "^" + COMMIT_B + "\n"
+                + COMMIT_B + " refs/remotes/origin/main\n");
+
+        RefResolver resolver = RefResolver.forDirectory(_tempDir.resolve("repo"));
+        assertEquals(COMMIT_A, resolver.getHeadCommit());
+        assertEquals(TAG_OBJECT, resolver.resolve("v1.0"));
+        assertEquals(COMMIT_B, resolver.resolve("origin/main"));
+        assertNull(resolver.resolve("missing"));
+    }
+
+    @Test
+    public void testLooseRefOverridesPackedRef() throws IOException, InterruptedException {
+        Path gitDir = createGitDir(_tempDir.resolve("repo"));
+        write(gitDir.resolve("HEAD"), "ref: refs/heads/main\n");
+        write(gitDir.resolve("packed-refs"), COMMIT_A + " refs/heads/main\n");
+        write(gitDir.resolve("refs/heads/main"), COMMIT_B + "\n");
+
+        RefResolver resolver = RefResolver.forDirectory(_tempDir.resolve("repo"));
+        assertEquals(COMMIT_B, resolver.getHeadCommit());
+    }
+
+    @Test
+    public void testPackedRefsReloadedWhenChanged() throws IOException, InterruptedException {
+        Path gitDir = createGitDir(_tempDir.resolve("repo"));
+        write(gitDir.resolve("HEAD"), "ref: refs/heads/main\n");
+        Path packedRefs = gitDir.resolve("packed-refs");
+        write(packedRefs, COMMIT_A + " refs/heads/main\n");
+        Files.setLastModifiedTime(packedRefs, FileTime.fromMillis(1_000_000L));
+
+        RefResolver resolver = RefResolver.forDirectory(_tempDir.resolve("repo"));
+        assertEquals(COMMIT_A, resolver.getHeadCommit());
+
+        write(packedRefs, COMMIT_B + " refs/heads/main\n");
+        Files.setLastModifiedTime(packedRefs, FileTime.fromMillis(2_000_000L));
+        assertEquals(COMMIT_B, resolver.getHeadCommit());
+    }
+
+    @Test
+    public void testLinkedWorktree() throws IOException, InterruptedException {
+        Path mainGitDir = createGitDir(_tempDir.resolve("repo"));
+        write(mainGitDir.resolve("HEAD"), "ref: refs/heads/main\n");
+        write(mainGitDir.resolve("refs/heads/main"), COMMIT_A + "\n");
+        write(mainGitDir.resolve("packed-refs"), COMMIT_B + " refs/heads/feature\n");
+
+        Path worktreeGitDir = Files.createDirectories(mainGitDir.resolve("worktrees/feature"));
+        write(worktreeGitDir.resolve("HEAD"), "ref: refs/heads/feature\n");
+        write(worktreeGitDir.resolve("commondir"), "../..\n");
+        Path worktree = Files.createDirectories(_tempDir.resolve("feature"));
+        write(worktree.resolve(".git"), "gitdir: " + worktreeGitDir.toAbsolutePath() + "\n");
+
+        RefResolver resolver = RefResolver.forDirectory(worktree);
+        assertEquals(worktreeGitDir.toAbsolutePath().normalize(), resolver.getGitDir());
+        assertEquals(mainGitDir.toAbsolutePath().normalize(), resolver.getCommonDir());
+        assertEquals("feature", resolver.getCurrentBranch());
+        assertEquals(COMMIT_B, resolver.getHeadCommit());
+        assertEquals(COMMIT_A, resolver.resolve("main"));
+    }
+
+    @Test
+    public void testLooseObjectIdResolves() throws IOException, InterruptedException {
+        Path gitDir = createGitDir(_tempDir.resolve("repo"));
+        write(gitDir.resolve("HEAD"), "ref: refs/heads/main\n");
+        write(gitDir.resolve("objects").resolve(COMMIT_A.substring(0, 2)).resolve(COMMIT_A.substring(2)), "");
+
+        RefResolver resolver = RefResolver.forDirectory(_tempDir.resolve("repo"));
+        assertEquals(COMMIT_A, resolver.resolve(COMMIT_A));
+    }
+
+    @Test
+    public void testUnknownObjectIdDoesNotResolve() throws IOException, InterruptedException {
+        assumeTrue(GitCLI.isGitExectuable());
+        Path repository = createRepository(0);
+
+        RefResolver resolver = RefResolver.forDirectory(repository);
+        assertNull(resolver.resolve(COMMIT_B));
+    }
+
+    @Test
+    public void testRevisionExpressionResolvedByCLI() throws IOException, InterruptedException {
+        assumeTrue(GitCLI.isGitExectuable());
+        Path repository = createRepository(2);
+        String parent = GitCLI.git(repository, "rev-parse", "HEAD~1").getStdOut().trim();
+
+        RefResolver resolver = RefResolver.forDirectory(repository);
+        // Repeated, since the output of a short-lived process used to be read before it was fully consumed
+        for (int i = 0; i < 20; i++) {
+            assertEquals(parent, resolver.resolve("HEAD~1"));
+        }
+        assertNull(resolver.resolve("HEAD~5"));
+    }
+
+    @Test
+    public void testUppercaseObjectIdsResolvedByCLI() throws IOException, InterruptedException {
+        assumeTrue(GitCLI.isGitExectuable());
+        Path repository = createRepository(1);
+        String head = GitCLI.git(repository, "rev-parse", "HEAD").getStdOut().trim();
+
+        RefResolver resolver = RefResolver.forDirectory(repository);
+        assertEquals(head, resolver.resolve(head.toUpperCase()));
+        assertEquals(head, resolver.resolve(head.substring(0, 10).toUpperCase()));
+    }
+
+    @Test
+    public void testAtIsHead() throws IOException, InterruptedException {
+        assumeTrue(GitCLI.isGitExectuable());
+        Path repository = createRepository(1);
+
+        RefResolver resolver = RefResolver.forDirectory(repository);
+        assertEquals(resolver.getHeadCommit(), resolver.resolve("@"));
+    }
+
+    @Test
+    public void testBinaryFileInGitDirIsNotARef() throws IOException, InterruptedException {
+        assumeTrue(GitCLI.isGitExectuable());
+        Path repository = createRepository(1);
+
+        RefResolver resolver = RefResolver.forDirectory(repository);
+        assertNull(resolver.resolve("index"));
+    }
+
+    @Test
+    public void testReftableConfigUsesCLI() throws IOException {
+        Path gitDir = createGitDir(_tempDir.resolve("repo"));
+        write(gitDir.resolve("HEAD"), "ref: refs/heads/.invalid\n");
+        write(gitDir.resolve("config"), "[core]\n\trepositoryformatversion = 1\n[extensions]\n\trefStorage = reftable\n");
+
+        assertTrue(RefResolver.forDirectory(_tempDir.resolve("repo")).usesCLI());
+    }
+
+    @Test
+    public void testReftableDirectoryResolvedByCLI() throws IOException, InterruptedException {
+        assumeTrue(GitCLI.isGitExectuable());
+        Path repository = createRepository(2);
+        String branch = GitCLI.git(repository, "symbolic-ref", "--short", "HEAD").getStdOut().trim();
+        String head = GitCLI.git(repository, "rev-parse", "HEAD").getStdOut().trim();
+        // Git ignores the directory without the refStorage extension, but it is enough for the resolver to stop reading files
+        Files.createDirectories(repository.resolve(".git/reftable"));
+
+        RefResolver resolver = RefResolver.forDirectory(repository);
+        assertTrue(resolver.usesCLI());
+        assertEquals(branch, resolver.getCurrentBranch());
+        assertEquals(head, resolver.getHeadCommit());
+        assertEquals(head, resolver.resolve(branch));
+        assertNull(resolver.resolve("missing"));
+    }
+
+    @Test
+    public void testNotARepository() {
+        assertThrows(IOException.class, () -> RefResolver.forDirectory(_tempDir.resolve("missing")));
+    }
+
+    @Test
+    public void testObjectIdFormats() {
+        assertTrue(RefResolver.isObjectId(COMMIT_A));
+        assertTrue(RefResolver.isObjectId(COMMIT_A + "111111111111111111111111"));
+        assertFalse(RefResolver.isObjectId("refs/heads/main"));
+        assertFalse(RefResolver.isObjectId(COMMIT_A.toUpperCase().replace('1', 'G')));
+    }
+
+    private Path createRepository(int commitCount) throws IOException, InterruptedException {
+        Path repository = Files.createDirectories(_tempDir.resolve("repo"));
+        git(repository, "init");
+        for (int i = 0; i < commitCount; i++) {
+            write(repository.resolve("main.txt"), "version " + i);
+            git(repository, "add", "main.txt");
+            git(repository, "-c", "user.name=Test", "-c", "user.email=test@example.com", "-c", "commit.gpgsign=false",
+                    "commit", "-m", "commit " + i);
+        }
+        return repository;
+    }
+
+    private static void git(Path repository, String... arguments) throws IOException, InterruptedException {
+        assertEquals(0, GitCLI.git(repository, arguments).getExitCode());
+    }
+
+    private static Path createGitDir(Path workTree) throws IOException {
+        Path gitDir = Files.createDirectories(workTree.resolve(".git"));
+        Files.createDirectories(gitDir.resolve("refs/heads"));
+        Files.createDirectories(gitDir.resolve("refs/tags"));
+        Files.createDirectories(gitDir.resolve("objects"));
+        return gitDir;
+    }
+
+    private static void write(Path file, String contents) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+    }
+}
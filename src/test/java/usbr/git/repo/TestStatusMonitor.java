@@ -0,0 +1,214 @@
+/*
+ * Copyright 2023 United States Bureau of Reclamation (USBR).
+ * United States Department of the Interior
+ * All Rights Reserved. USBR PROPRIETARY/CONFIDENTIAL.
+ * Source may not be released without written approval
+ * from USBR
+ */
+
+package usbr.git.repo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import usbr.git.cli.GitCLI;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class TestStatusMonitor {
+
+    private static final Path REPOSITORY = Paths.get("study");
+    private static final String HEAD_ID = "1111111111111111111111111111111111111111";
+    private static final String INDEX_ID = "2222222222222222222222222222222222222222";
+    private static final String NEW_INDEX_ID = "3333333333333333333333333333333333333333";
+
+    private static final String BRANCH_HEADERS = "# branch.oid " + HEAD_ID + "\0"
+            + "# branch.head main\0"
+            + "# branch.upstream origin/main\0"
+            + "# branch.ab +2 -1\0";
+    private static final String MODIFIED_CONFIG = "1 .M N... 100644 100644 100644 " + HEAD_ID + " " + INDEX_ID + " config/study.xml\0";
+    private static final String RENAMED_SCENARIO = "2 R. N... 100644 100644 100644 " + HEAD_ID + " " + INDEX_ID + " R100 scenarios/new name.xml\0scenarios/old.xml\0";
+    private static final String UNTRACKED_OUTPUT = "? results/run 1.dss\0";
+
+    @TempDir
+    Path _tempDir;
+
+    @Test
+    public void testParsesEntriesAndBranch() throws IOException {
+        StatusMonitor monitor = new StatusMonitor();
+        monitor.refresh(REPOSITORY, output(BRANCH_HEADERS + MODIFIED_CONFIG + RENAMED_SCENARIO + UNTRACKED_OUTPUT
+                + "u UU N... 100644 100644 100644 100644 " + HEAD_ID + " " + INDEX_ID + " " + NEW_INDEX_ID + " model.txt\0"));
+        StatusSnapshot snapshot = monitor.getSnapshot(REPOSITORY);
+
+        BranchStatus branch = snapshot.getBranch();
+        assertEquals(HEAD_ID, branch.getCommit());
+        assertEquals("main", branch.getBranch());
+        assertEquals("origin/main", branch.getUpstream());
+        assertEquals(2, branch.getAhead());
+        assertEquals(1, branch.getBehind());
+
+        StatusEntry config = snapshot.getEntry("config/study.xml");
+        assertEquals(StatusEntry.Type.CHANGED, config.getType());
+        assertEquals('.', config.getIndexStatus());
+        assertEquals('M', config.getWorkTreeStatus());
+
+        StatusEntry renamed = snapshot.getEntry("scenarios/new name.xml");
+        assertEquals(StatusEntry.Type.RENAMED, renamed.getType());
+        assertEquals("scenarios/old.xml", renamed.getOriginalPath());
+
+        StatusEntry untracked = snapshot.getEntry("results/run 1.dss");
+        assertEquals(StatusEntry.Type.UNTRACKED, untracked.getType());
+        assertEquals('?', untracked.getWorkTreeStatus());
+
+        assertEquals(StatusEntry.Type.UNMERGED, snapshot.getEntry("model.txt").getType());
+        assertEquals(4, snapshot.getEntries().size());
+        assertFalse(snapshot.isClean());
+    }
+
+    @Test
+    public void testInitialAndDetachedBranch() throws IOException {
+        StatusMonitor monitor = new StatusMonitor();
+        monitor.refresh(REPOSITORY, output("# branch.oid (initial)\0# branch.head (detached)\0"));
+
+        BranchStatus branch = monitor.getSnapshot(REPOSITORY).getBranch();
+        assertNull(branch.getCommit());
+        assertNull(branch.getBranch());
+        assertNull(branch.getUpstream());
+        assertTrue(monitor.getSnapshot(REPOSITORY).isClean());
+    }
+
+    @Test
+    public void testFirstRefreshReportsEverythingAdded() throws IOException {
+        StatusMonitor monitor = new StatusMonitor();
+        List<StatusChange> changes = monitor.refresh(REPOSITORY, output(BRANCH_HEADERS + MODIFIED_CONFIG + UNTRACKED_OUTPUT));
+
+        assertEquals(2, changes.size());
+        for (StatusChange change : changes) {
+            assertEquals(StatusChange.Kind.ADDED, change.getKind());
+        }
+    }
+
+    @Test
+    public void testUnchangedRefreshReportsNothing() throws IOException {
+        StatusMonitor monitor = new StatusMonitor();
+        List<StatusChange> notified = new ArrayList<>();
+        monitor.refresh(REPOSITORY, output(BRANCH_HEADERS + MODIFIED_CONFIG + RENAMED_SCENARIO));
+        StatusEntry before = monitor.getSnapshot(REPOSITORY).getEntry("config/study.xml");
+        monitor.addListener((repository, snapshot, changes) -> notified.addAll(changes));
+
+        List<StatusChange> changes = monitor.refresh(REPOSITORY, output(BRANCH_HEADERS + MODIFIED_CONFIG + RENAMED_SCENARIO));
+
+        assertTrue(changes.isEmpty());
+        assertTrue(notified.isEmpty());
+        // Unchanged entries are carried over rather than allocated again
+        assertSame(before, monitor.getSnapshot(REPOSITORY).getEntry("config/study.xml"));
+    }
+
+    @Test
+    public void testReportsAddedRemovedAndModified() throws IOException {
+        StatusMonitor monitor = new StatusMonitor();
+        monitor.refresh(REPOSITORY, output(BRANCH_HEADERS + MODIFIED_CONFIG + RENAMED_SCENARIO));
+        List<StatusChange> notified = new ArrayList<>();
+        monitor.addListener((repository, snapshot, changes) -> notified.addAll(changes));
+
+        String stagedConfig = "1 M. N... 100644 100644 100644 " + HEAD_ID + " " + NEW_INDEX_ID + " config/study.xml\0";
+        List<StatusChange> changes = monitor.refresh(REPOSITORY, output(BRANCH_HEADERS + stagedConfig + UNTRACKED_OUTPUT));
+
+        assertEquals(3, changes.size());
+        assertEquals(changes, notified);
+        StatusChange modified = findChange(changes, "config/study.xml");
+        assertEquals(StatusChange.Kind.MODIFIED, modified.getKind());
+        assertEquals('M', modified.getPrevious().getWorkTreeStatus());
+        assertEquals('M', modified.getCurrent().getIndexStatus());
+        assertEquals(StatusChange.Kind.ADDED, findChange(changes, "results/run 1.dss").getKind());
+        assertEquals(StatusChange.Kind.REMOVED, findChange(changes, "scenarios/new name.xml").getKind());
+    }
+
+    @Test
+    public void testBranchChangeNotifiesListeners() throws IOException {
+        StatusMonitor monitor = new StatusMonitor();
+        monitor.refresh(REPOSITORY, output(BRANCH_HEADERS));
+        List<BranchStatus> notified = new ArrayList<>();
+        monitor.addListener((repository, snapshot, changes) -> notified.add(snapshot.getBranch()));
+
+        monitor.refresh(REPOSITORY, output("# branch.oid " + INDEX_ID + "\0# branch.head main\0"));
+
+        assertEquals(1, notified.size());
+        assertEquals(INDEX_ID, notified.get(0).getCommit());
+    }
+
+    @Test
+    public void testForgetDropsSnapshot() throws IOException {
+        StatusMonitor monitor = new StatusMonitor();
+        monitor.refresh(REPOSITORY, output(BRANCH_HEADERS + MODIFIED_CONFIG));
+        monitor.forget(REPOSITORY);
+
+        assertNull(monitor.getSnapshot(REPOSITORY));
+        assertEquals(1, monitor.refresh(REPOSITORY, output(BRANCH_HEADERS + MODIFIED_CONFIG)).size());
+    }
+
+    @Test
+    public void testRefreshRunsGitStatus() throws IOException, InterruptedException {
+        assumeTrue(GitCLI.isGitExectuable());
+        Path repository = Files.createDirectories(_tempDir.resolve("repo"));
+        git(repository, "init");
+        Path subdirectory = Files.createDirectories(repository.resolve("config"));
+        Files.write(subdirectory.resolve("study.xml"), "original".getBytes(StandardCharsets.UTF_8));
+        git(repository, "add", "config/study.xml");
+        git(repository, "-c", "user.name=Test", "-c", "user.email=test@example.com", "-c", "commit.gpgsign=false", "commit", "-m", "initial");
+        String branch = GitCLI.git(repository, "symbolic-ref", "--short", "HEAD").getStdOut().trim();
+
+        StatusMonitor monitor = new StatusMonitor();
+        assertTrue(monitor.refresh(repository).isEmpty());
+        assertEquals(branch, monitor.getSnapshot(repository).getBranch().getBranch());
+
+        Files.write(subdirectory.resolve("study.xml"), "modified".getBytes(StandardCharsets.UTF_8));
+        Files.write(repository.resolve("run 1.dss"), "results".getBytes(StandardCharsets.UTF_8));
+        List<StatusChange> changes = monitor.refresh(repository);
+
+        assertEquals(2, changes.size());
+        assertEquals('M', findChange(changes, "config/study.xml").getCurrent().getWorkTreeStatus());
+        assertEquals(StatusEntry.Type.UNTRACKED, findChange(changes, "run 1.dss").getCurrent().getType());
+
+        // A subdirectory is the same repository, so nothing is reported again
+        assertTrue(monitor.refresh(subdirectory).isEmpty());
+        assertSame(monitor.getSnapshot(repository), monitor.getSnapshot(subdirectory));
+    }
+
+    @Test
+    public void testRefreshOutsideRepositoryFails() {
+        assumeTrue(GitCLI.isGitExectuable());
+        StatusMonitor monitor = new StatusMonitor();
+
+        assertThrows(IOException.class, () -> monitor.refresh(_tempDir));
+        assertNull(monitor.getSnapshot(_tempDir));
+    }
+
+    private static void git(Path repository, String... arguments) throws IOException, InterruptedException {
+        assertEquals(0, GitCLI.git(repository, arguments).getExitCode());
+    }
+
+    private static StatusChange findChange(List<StatusChange> changes, String path) {
+        for (StatusChange change : changes) {
+            if (change.getPath().equals(path)) {
+                return change;
+            }
+        }
+        fail("No change for " + path);
+        return null;
+    }
+
+    private static InputStream output(String porcelain) {
+        return new ByteArrayInputStream(porcelain.getBytes(StandardCharsets.UTF_8));
+    }
+}